@@ -0,0 +1,94 @@
+package se325.assignment01.concert.common.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import se325.assignment01.concert.common.jackson.LocalDateTimeDeserializer;
+import se325.assignment01.concert.common.jackson.LocalDateTimeSerializer;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents how many seats are left for a concert on one of its dates, in total and in each price band.
+ * concertId       the concert's id
+ * date            the concert date
+ * numSeats        the number of seats in the theatre
+ * numSeatsBooked  the number of seats which are booked
+ * numSeatsHeld    the number of seats which are held for a user who has not booked them yet
+ * priceBands      the same numbers for each price band, from the front of the theatre to the back
+ */
+public class AvailabilityDTO {
+
+    private long concertId;
+    private LocalDateTime date;
+    private int numSeats;
+    private int numSeatsBooked;
+    private int numSeatsHeld;
+    private List<PriceBandAvailabilityDTO> priceBands = new ArrayList<>();
+
+    public AvailabilityDTO() {
+    }
+
+    public AvailabilityDTO(long concertId, LocalDateTime date, int numSeats, int numSeatsBooked, int numSeatsHeld,
+                           List<PriceBandAvailabilityDTO> priceBands) {
+        this.concertId = concertId;
+        this.date = date;
+        this.numSeats = numSeats;
+        this.numSeatsBooked = numSeatsBooked;
+        this.numSeatsHeld = numSeatsHeld;
+        this.priceBands = priceBands;
+    }
+
+    public long getConcertId() {
+        return concertId;
+    }
+
+    public void setConcertId(long concertId) {
+        this.concertId = concertId;
+    }
+
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @JsonDeserialize(using = LocalDateTimeDeserializer.class)
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @JsonDeserialize(using = LocalDateTimeDeserializer.class)
+    public void setDate(LocalDateTime date) {
+        this.date = date;
+    }
+
+    public int getNumSeats() {
+        return numSeats;
+    }
+
+    public void setNumSeats(int numSeats) {
+        this.numSeats = numSeats;
+    }
+
+    public int getNumSeatsBooked() {
+        return numSeatsBooked;
+    }
+
+    public void setNumSeatsBooked(int numSeatsBooked) {
+        this.numSeatsBooked = numSeatsBooked;
+    }
+
+    public int getNumSeatsHeld() {
+        return numSeatsHeld;
+    }
+
+    public void setNumSeatsHeld(int numSeatsHeld) {
+        this.numSeatsHeld = numSeatsHeld;
+    }
+
+    public List<PriceBandAvailabilityDTO> getPriceBands() {
+        return priceBands;
+    }
+
+    public void setPriceBands(List<PriceBandAvailabilityDTO> priceBands) {
+        this.priceBands = priceBands;
+    }
+}
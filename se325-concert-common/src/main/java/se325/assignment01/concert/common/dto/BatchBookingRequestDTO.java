@@ -0,0 +1,42 @@
+package se325.assignment01.concert.common.dto;
+
+import se325.assignment01.concert.common.types.BatchMode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents a request to make several bookings at once, e.g. a group order across several dates.
+ * bookings    the bookings to make
+ * mode        AllOrNothing to make none of the bookings if any of them can't be made, or BestEffort to make as many
+ *             of them as possible
+ */
+public class BatchBookingRequestDTO {
+
+    private List<BookingRequestDTO> bookings = new ArrayList<>();
+    private BatchMode mode = BatchMode.AllOrNothing;
+
+    public BatchBookingRequestDTO() {
+    }
+
+    public BatchBookingRequestDTO(List<BookingRequestDTO> bookings, BatchMode mode) {
+        this.bookings = bookings;
+        this.mode = mode;
+    }
+
+    public List<BookingRequestDTO> getBookings() {
+        return bookings;
+    }
+
+    public void setBookings(List<BookingRequestDTO> bookings) {
+        this.bookings = bookings;
+    }
+
+    public BatchMode getMode() {
+        return mode;
+    }
+
+    public void setMode(BatchMode mode) {
+        this.mode = mode;
+    }
+}
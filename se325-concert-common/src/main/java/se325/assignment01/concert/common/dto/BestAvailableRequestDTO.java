@@ -0,0 +1,75 @@
+package se325.assignment01.concert.common.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import se325.assignment01.concert.common.jackson.LocalDateTimeDeserializer;
+import se325.assignment01.concert.common.jackson.LocalDateTimeSerializer;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents a request to book the best available adjacent seats, rather than naming the seats.
+ * concertId      the id of the concert to be booked
+ * date           the date on which that concert is to be booked
+ * numberOfSeats  the number of adjacent seats wanted, all in the same row
+ * priceBand      the name of the price band to book in e.g. "Gold Seating", or null for any price band
+ */
+public class BestAvailableRequestDTO {
+
+    private long concertId;
+    private LocalDateTime date;
+    private int numberOfSeats;
+    private String priceBand;
+
+    public BestAvailableRequestDTO() {
+    }
+
+    public BestAvailableRequestDTO(long concertId, LocalDateTime date, int numberOfSeats) {
+        this.concertId = concertId;
+        this.date = date;
+        this.numberOfSeats = numberOfSeats;
+    }
+
+    public BestAvailableRequestDTO(long concertId, LocalDateTime date, int numberOfSeats, String priceBand) {
+        this.concertId = concertId;
+        this.date = date;
+        this.numberOfSeats = numberOfSeats;
+        this.priceBand = priceBand;
+    }
+
+    public long getConcertId() {
+        return concertId;
+    }
+
+    public void setConcertId(long concertId) {
+        this.concertId = concertId;
+    }
+
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @JsonDeserialize(using = LocalDateTimeDeserializer.class)
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @JsonDeserialize(using = LocalDateTimeDeserializer.class)
+    public void setDate(LocalDateTime date) {
+        this.date = date;
+    }
+
+    public int getNumberOfSeats() {
+        return numberOfSeats;
+    }
+
+    public void setNumberOfSeats(int numberOfSeats) {
+        this.numberOfSeats = numberOfSeats;
+    }
+
+    public String getPriceBand() {
+        return priceBand;
+    }
+
+    public void setPriceBand(String priceBand) {
+        this.priceBand = priceBand;
+    }
+}
@@ -0,0 +1,38 @@
+package se325.assignment01.concert.common.dto;
+
+/**
+ * Represents the outcome of one of the bookings of a batch.
+ * status      the HTTP status the booking would have had on its own, e.g. 201 if it was made or 403 if its seats were
+ *             not available. 409 means it could have been made, but was not because another booking of the batch
+ *             failed
+ * location    the URI of the booking, if it was made
+ */
+public class BookingResultDTO {
+
+    private int status;
+    private String location;
+
+    public BookingResultDTO() {
+    }
+
+    public BookingResultDTO(int status, String location) {
+        this.status = status;
+        this.location = location;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public void setLocation(String location) {
+        this.location = location;
+    }
+}
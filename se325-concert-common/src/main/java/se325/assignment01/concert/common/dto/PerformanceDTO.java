@@ -0,0 +1,93 @@
+package se325.assignment01.concert.common.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import se325.assignment01.concert.common.jackson.LocalDateTimeDeserializer;
+import se325.assignment01.concert.common.jackson.LocalDateTimeSerializer;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents a single performance of a concert, i.e. the concert on one of its dates, along with how many seats are
+ * left for it.
+ * concertId       the concert's id
+ * title           the concert's title
+ * imageName       the concert's image name
+ * date            the date of the performance
+ * numSeatsFree    the number of seats which are neither booked nor held
+ * numSeatsBooked  the number of seats which are booked
+ */
+public class PerformanceDTO {
+
+    private long concertId;
+    private String title;
+    private String imageName;
+    private LocalDateTime date;
+    private int numSeatsFree;
+    private int numSeatsBooked;
+
+    public PerformanceDTO() {
+    }
+
+    public PerformanceDTO(long concertId, String title, String imageName, LocalDateTime date, int numSeatsFree,
+                          int numSeatsBooked) {
+        this.concertId = concertId;
+        this.title = title;
+        this.imageName = imageName;
+        this.date = date;
+        this.numSeatsFree = numSeatsFree;
+        this.numSeatsBooked = numSeatsBooked;
+    }
+
+    public long getConcertId() {
+        return concertId;
+    }
+
+    public void setConcertId(long concertId) {
+        this.concertId = concertId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getImageName() {
+        return imageName;
+    }
+
+    public void setImageName(String imageName) {
+        this.imageName = imageName;
+    }
+
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @JsonDeserialize(using = LocalDateTimeDeserializer.class)
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @JsonDeserialize(using = LocalDateTimeDeserializer.class)
+    public void setDate(LocalDateTime date) {
+        this.date = date;
+    }
+
+    public int getNumSeatsFree() {
+        return numSeatsFree;
+    }
+
+    public void setNumSeatsFree(int numSeatsFree) {
+        this.numSeatsFree = numSeatsFree;
+    }
+
+    public int getNumSeatsBooked() {
+        return numSeatsBooked;
+    }
+
+    public void setNumSeatsBooked(int numSeatsBooked) {
+        this.numSeatsBooked = numSeatsBooked;
+    }
+}
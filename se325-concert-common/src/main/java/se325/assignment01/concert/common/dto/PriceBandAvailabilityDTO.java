@@ -0,0 +1,72 @@
+package se325.assignment01.concert.common.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Represents how many seats of a single price band are left for a concert date.
+ * priceBand       the name of the price band e.g. "Gold Seating"
+ * price           the price of each seat in the price band
+ * numSeats        the number of seats in the price band
+ * numSeatsBooked  the number of those seats which are booked
+ * numSeatsHeld    the number of those seats which are held for a user who has not booked them yet
+ */
+public class PriceBandAvailabilityDTO {
+
+    private String priceBand;
+    private BigDecimal price;
+    private int numSeats;
+    private int numSeatsBooked;
+    private int numSeatsHeld;
+
+    public PriceBandAvailabilityDTO() {
+    }
+
+    public PriceBandAvailabilityDTO(String priceBand, BigDecimal price, int numSeats, int numSeatsBooked,
+                                    int numSeatsHeld) {
+        this.priceBand = priceBand;
+        this.price = price;
+        this.numSeats = numSeats;
+        this.numSeatsBooked = numSeatsBooked;
+        this.numSeatsHeld = numSeatsHeld;
+    }
+
+    public String getPriceBand() {
+        return priceBand;
+    }
+
+    public void setPriceBand(String priceBand) {
+        this.priceBand = priceBand;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+
+    public int getNumSeats() {
+        return numSeats;
+    }
+
+    public void setNumSeats(int numSeats) {
+        this.numSeats = numSeats;
+    }
+
+    public int getNumSeatsBooked() {
+        return numSeatsBooked;
+    }
+
+    public void setNumSeatsBooked(int numSeatsBooked) {
+        this.numSeatsBooked = numSeatsBooked;
+    }
+
+    public int getNumSeatsHeld() {
+        return numSeatsHeld;
+    }
+
+    public void setNumSeatsHeld(int numSeatsHeld) {
+        this.numSeatsHeld = numSeatsHeld;
+    }
+}
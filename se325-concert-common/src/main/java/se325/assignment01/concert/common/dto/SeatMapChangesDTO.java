@@ -0,0 +1,52 @@
+package se325.assignment01.concert.common.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents a change to the seats of a concert date, as sent on its seat stream. The first event of a stream is a
+ * snapshot, whose booked and held seats are all of the seats booked and held at the time; each later event only has
+ * the seats that changed since the event before it.
+ * booked      the seats which are now booked
+ * held        the seats which are now held for a user who has not booked them yet
+ * released    the seats which were booked or held and are now available again
+ */
+public class SeatMapChangesDTO {
+
+    private List<String> booked = new ArrayList<>();
+    private List<String> held = new ArrayList<>();
+    private List<String> released = new ArrayList<>();
+
+    public SeatMapChangesDTO() {
+    }
+
+    public SeatMapChangesDTO(List<String> booked, List<String> held, List<String> released) {
+        this.booked = booked;
+        this.held = held;
+        this.released = released;
+    }
+
+    public List<String> getBooked() {
+        return booked;
+    }
+
+    public void setBooked(List<String> booked) {
+        this.booked = booked;
+    }
+
+    public List<String> getHeld() {
+        return held;
+    }
+
+    public void setHeld(List<String> held) {
+        this.held = held;
+    }
+
+    public List<String> getReleased() {
+        return released;
+    }
+
+    public void setReleased(List<String> released) {
+        this.released = released;
+    }
+}
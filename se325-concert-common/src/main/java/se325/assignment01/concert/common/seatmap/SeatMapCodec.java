@@ -0,0 +1,79 @@
+package se325.assignment01.concert.common.seatmap;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes and decodes the compact binary form of the seats booked on a concert date, served with the media type
+ * {@link #MEDIA_TYPE}. Rather than a list of every seat with its price, it only has the version of the theatre layout
+ * (which fixes the seats and their price bands) and one bit per seat, so a seat map is 22 bytes. All numbers are big
+ * endian:
+ * <pre>
+ *     byte    format version, currently 1
+ *     int     layout version
+ *     byte    number of rows
+ *     byte    number of seats per row
+ *     byte[]  one bit per seat, set if the seat is booked; seat n (one-based) of row r (zero-based) is bit
+ *             (r * seats per row + n - 1), counting from the lowest bit of the first byte
+ * </pre>
+ */
+public class SeatMapCodec {
+
+    public static final String MEDIA_TYPE = "application/x-seatmap";
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_LENGTH = 7;
+
+    /**
+     * Encodes the booked seats of a concert date.
+     *
+     * @param layoutVersion the version of the theatre layout the seats are in
+     * @param seatsPerRow   the number of seats in each row, at most 32
+     * @param rowMasks      the booked seats of each row, with bit 0 being seat 1
+     * @return the encoded seats
+     */
+    public static byte[] encode(int layoutVersion, int seatsPerRow, int[] rowMasks) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + bitmapLength(rowMasks.length, seatsPerRow));
+        buffer.put((byte) FORMAT_VERSION).putInt(layoutVersion).put((byte) rowMasks.length).put((byte) seatsPerRow);
+
+        byte[] bitmap = new byte[buffer.remaining()];
+        for (int row = 0; row < rowMasks.length; row++) {
+            for (int seat = 0; seat < seatsPerRow; seat++) {
+                if ((rowMasks[row] & (1 << seat)) != 0) {
+                    int bit = row * seatsPerRow + seat;
+                    bitmap[bit / 8] |= 1 << (bit % 8);
+                }
+            }
+        }
+        return buffer.put(bitmap).array();
+    }
+
+    /**
+     * Decodes seats encoded with {@link #encode(int, int, int[])}.
+     *
+     * @param bytes the encoded seats
+     * @return the decoded seats
+     * @throws IllegalArgumentException if the bytes are not a seat map in a known format version
+     */
+    public static SeatOccupancy decode(byte[] bytes) {
+        if (bytes.length < HEADER_LENGTH || bytes[0] != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Not a version " + FORMAT_VERSION + " seat map");
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, bytes.length - 1);
+        int layoutVersion = buffer.getInt();
+        int numRows = buffer.get() & 0xFF;
+        int seatsPerRow = buffer.get() & 0xFF;
+        if (buffer.remaining() != bitmapLength(numRows, seatsPerRow)) {
+            throw new IllegalArgumentException("Seat map has " + buffer.remaining() + " bytes of seats, expected "
+                    + bitmapLength(numRows, seatsPerRow));
+        }
+
+        byte[] bitmap = new byte[buffer.remaining()];
+        buffer.get(bitmap);
+        return new SeatOccupancy(layoutVersion, numRows, seatsPerRow, bitmap);
+    }
+
+    private static int bitmapLength(int numRows, int seatsPerRow) {
+        return (numRows * seatsPerRow + 7) / 8;
+    }
+}
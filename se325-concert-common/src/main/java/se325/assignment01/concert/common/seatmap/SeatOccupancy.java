@@ -0,0 +1,62 @@
+package se325.assignment01.concert.common.seatmap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The seats booked on a concert date, as decoded by {@link SeatMapCodec}. Rows are zero-based and labelled from "A",
+ * and seats within a row are numbered from 1, so seat 5 of row 0 is "A5".
+ */
+public class SeatOccupancy {
+
+    private final int layoutVersion;
+    private final int numRows;
+    private final int seatsPerRow;
+    private final byte[] bitmap;
+
+    SeatOccupancy(int layoutVersion, int numRows, int seatsPerRow, byte[] bitmap) {
+        this.layoutVersion = layoutVersion;
+        this.numRows = numRows;
+        this.seatsPerRow = seatsPerRow;
+        this.bitmap = bitmap;
+    }
+
+    /**
+     * Returns the version of the theatre layout, which fixes the seats and their prices. A client that has cached the
+     * layout of this version doesn't need to fetch it again.
+     */
+    public int getLayoutVersion() {
+        return layoutVersion;
+    }
+
+    public int getNumRows() {
+        return numRows;
+    }
+
+    public int getSeatsPerRow() {
+        return seatsPerRow;
+    }
+
+    /**
+     * Returns true if the seat at the given zero-based row and one-based seat number is booked.
+     */
+    public boolean isBooked(int row, int seatNum) {
+        int bit = row * seatsPerRow + seatNum - 1;
+        return (bitmap[bit / 8] & (1 << (bit % 8))) != 0;
+    }
+
+    /**
+     * Returns the labels of the booked seats, in row and seat order.
+     */
+    public List<String> getBookedLabels() {
+        List<String> labels = new ArrayList<>();
+        for (int row = 0; row < numRows; row++) {
+            for (int seatNum = 1; seatNum <= seatsPerRow; seatNum++) {
+                if (isBooked(row, seatNum)) {
+                    labels.add("" + (char) ('A' + row) + seatNum);
+                }
+            }
+        }
+        return labels;
+    }
+}
@@ -0,0 +1,5 @@
+package se325.assignment01.concert.common.types;
+
+public enum BatchMode {
+    AllOrNothing, BestEffort
+}
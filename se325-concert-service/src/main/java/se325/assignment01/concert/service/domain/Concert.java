@@ -9,8 +9,11 @@ import javax.persistence.*;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.Fetch;
 import org.hibernate.annotations.FetchMode;
+import org.hibernate.annotations.Immutable;
 
 /**
  * The Concert class models that of a real life concert. It contains fields such as a generated ID, the title of the
@@ -19,6 +22,9 @@ import org.hibernate.annotations.FetchMode;
  */
 @Entity
 @Table(name = "CONCERTS")
+@Immutable
+@Cacheable //Concerts never change once loaded, so are kept in the second-level cache
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
 public class Concert {
 
     @Id
@@ -39,11 +45,13 @@ public class Concert {
     @Fetch(FetchMode.SUBSELECT) //Subselect mode to optimise the retrieval of the performer list if a concert is retrieved
     @JoinTable(name = "CONCERT_PERFORMER", joinColumns = @JoinColumn(name = "CONCERT_ID"), inverseJoinColumns = @JoinColumn(name = "PERFORMER_ID"))
     @Column(name = "PERFORMER")
+    @Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
     private Set<Performer> performers; //The list of performers performing in the concert
 
     @ElementCollection(fetch = FetchType.EAGER)
     @CollectionTable(name = "CONCERT_DATES", joinColumns = @JoinColumn(name = "CONCERT_ID"))
     @Column(name = "DATE")
+    @Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
     private Set<LocalDateTime> dates; //The dates for which the concert is held on
 
     public Concert() {
@@ -2,6 +2,9 @@ package se325.assignment01.concert.service.domain;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
 import se325.assignment01.concert.common.types.Genre;
 
 import javax.persistence.*;
@@ -14,6 +17,9 @@ import java.util.Set;
  */
 @Entity
 @Table(name = "PERFORMERS")
+@Immutable
+@Cacheable //Performers never change once loaded, so are kept in the second-level cache
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
 public class Performer {
 
     @Id
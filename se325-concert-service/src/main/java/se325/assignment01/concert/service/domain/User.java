@@ -10,7 +10,7 @@ import javax.persistence.*;
  * that the user creates, a version to see if updated, a cookie for authentication
  */
 @Entity
-@Table(name = "USERS")
+@Table(name = "USERS", indexes = @Index(name = "USERS_COOKIE", columnList = "cookie"))
 public class User {
 
     @Id
@@ -28,7 +28,7 @@ public class User {
     @Version
     private Long version; //A version to see if the user is updated, for concurrency control
 
-    private String cookie; //Authentication cookie for verification
+    private String cookie; //Authentication cookie for verification, indexed as sessions not cached are found by it
 
     public User() {
 
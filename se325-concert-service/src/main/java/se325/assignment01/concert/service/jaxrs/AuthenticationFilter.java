@@ -0,0 +1,107 @@
+package se325.assignment01.concert.service.jaxrs;
+
+import se325.assignment01.concert.service.services.PersistenceManager;
+import se325.assignment01.concert.service.util.Config;
+import se325.assignment01.concert.service.util.SessionCache;
+import se325.assignment01.concert.service.util.SessionTokens;
+
+import javax.persistence.EntityManager;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.core.Cookie;
+import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.ext.Provider;
+import java.security.Principal;
+import java.util.List;
+
+/**
+ * This filter authenticates every request from its auth cookie before it reaches a resource, and makes the user
+ * available as a {@link UserPrincipal} from the request's {@link SecurityContext}. Signed session tokens are checked by
+ * {@link SessionTokens}. Stored cookies are looked up in the {@link SessionCache}, and only queried from the database
+ * if they are not cached. Requests without a valid cookie are
+ * let through without a principal, for the resources to reject if they need a user.
+ */
+@Provider
+public class AuthenticationFilter implements ContainerRequestFilter {
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        Cookie cookie = requestContext.getCookies().get(Config.CLIENT_COOKIE);
+        if (cookie == null) {
+            return;
+        }
+
+        UserPrincipal principal = Config.SESSION_TOKENS.equals("signed")
+                ? verifyToken(cookie.getValue()) : findSession(cookie.getValue());
+        if (principal == null) { //If principal is null means the cookie is not of a logged in user
+            return;
+        }
+
+        SecurityContext original = requestContext.getSecurityContext();
+        requestContext.setSecurityContext(new SecurityContext() {
+            @Override
+            public Principal getUserPrincipal() {
+                return principal;
+            }
+
+            @Override
+            public boolean isUserInRole(String role) {
+                return false;
+            }
+
+            @Override
+            public boolean isSecure() {
+                return original.isSecure();
+            }
+
+            @Override
+            public String getAuthenticationScheme() {
+                return "Cookie";
+            }
+        });
+    }
+
+    /**
+     * Finds the user of a signed session token.
+     */
+    private UserPrincipal verifyToken(String token) {
+        SessionTokens.Claims claims = SessionTokens.instance().verify(token);
+        return (claims == null) ? null : new UserPrincipal(claims.getUserId(), claims.getUsername());
+    }
+
+    /**
+     * Finds the user of a stored auth cookie, from the session cache if it is cached.
+     */
+    private UserPrincipal findSession(String cookie) {
+        SessionCache.Session session = SessionCache.instance().get(cookie);
+        if (session == null) {
+            session = loadSession(cookie);
+        }
+        return (session == null) ? null : new UserPrincipal(session.getUserId(), session.getUsername());
+    }
+
+    /**
+     * Finds the user with the matching cookie in the database, and caches their session.
+     */
+    private SessionCache.Session loadSession(String cookie) {
+        EntityManager entityManager = PersistenceManager.instance().createEntityManager();
+
+        try {
+            entityManager.getTransaction().begin();
+            List<Object[]> users = entityManager.createQuery(
+                    "select u.id, u.username from User u where u.cookie = :cookie", Object[].class)
+                    .setParameter("cookie", cookie).setMaxResults(1).getResultList();
+            entityManager.getTransaction().commit();
+            if (users.isEmpty()) {
+                return null;
+            }
+
+            return SessionCache.instance().putIfAbsent(cookie, (Long) users.get(0)[0], (String) users.get(0)[1]);
+        } finally {
+            if (entityManager.getTransaction().isActive()) {
+                entityManager.getTransaction().rollback();
+            }
+            entityManager.close();
+        }
+    }
+}
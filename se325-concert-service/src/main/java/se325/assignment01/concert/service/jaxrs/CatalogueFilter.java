@@ -0,0 +1,95 @@
+package se325.assignment01.concert.service.jaxrs;
+
+import se325.assignment01.concert.common.types.Genre;
+import se325.assignment01.concert.service.util.Config;
+
+import javax.ws.rs.QueryParam;
+import java.time.LocalDateTime;
+
+/**
+ * The query parameters for paging through and filtering the concerts and performers, received with
+ * <code>@BeanParam</code>. Pages are keyset-based: a page has the items with the lowest ids after the <code>after</code>
+ * id, so a client gets the next page by passing the id of the last item it has. For example:
+ * <code>
+ *     GET /concerts?limit=20&amp;after=40&amp;from=2020-01-01T00:00:00&amp;to=2021-01-01T00:00:00&amp;genre=Rock
+ * </code>
+ * <ul>
+ *     <li>limit: how many items to return, at most {@link Config#MAX_PAGE_SIZE}</li>
+ *     <li>after: only items with a higher id than this</li>
+ *     <li>from, to: only concerts with a date in this range (from inclusive, to exclusive), and their performers</li>
+ *     <li>genre: only performers of this genre, and concerts with one</li>
+ * </ul>
+ */
+public class CatalogueFilter {
+
+    @QueryParam("limit")
+    private Integer limit;
+
+    @QueryParam("after")
+    private Long after;
+
+    @QueryParam("from")
+    private LocalDateTimeParam from;
+
+    @QueryParam("to")
+    private LocalDateTimeParam to;
+
+    @QueryParam("genre")
+    private String genre; //Parsed by getGenre(), so that an unknown genre is a bad request rather than a 404
+
+    /**
+     * Returns true if none of the parameters were given, so the whole catalogue was asked for.
+     */
+    public boolean isEmpty() {
+        return limit == null && after == null && from == null && to == null && genre == null;
+    }
+
+    /**
+     * Returns false if the limit isn't positive, the date range ends before it starts, or the genre is unknown.
+     */
+    public boolean isValid() {
+        return (limit == null || limit > 0)
+                && (from == null || to == null || !to.getLocalDateTime().isBefore(from.getLocalDateTime()))
+                && (genre == null || getGenre() != null);
+    }
+
+    /**
+     * Returns the number of items to return, which is {@link Config#DEFAULT_PAGE_SIZE} unless a limit was given.
+     */
+    public int getLimit() {
+        return limit == null ? Config.DEFAULT_PAGE_SIZE : Math.min(limit, Config.MAX_PAGE_SIZE);
+    }
+
+    public Long getAfter() {
+        return after;
+    }
+
+    public LocalDateTime getFrom() {
+        return from == null ? null : from.getLocalDateTime();
+    }
+
+    public LocalDateTime getTo() {
+        return to == null ? null : to.getLocalDateTime();
+    }
+
+    /**
+     * Returns the genre asked for, or null if none was given or it isn't one of the {@link Genre}s.
+     */
+    public Genre getGenre() {
+        if (genre == null) {
+            return null;
+        }
+        try {
+            return Genre.valueOf(genre);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if only concerts with a date in a range are wanted.
+     */
+    public boolean hasDateRange() {
+        return from != null || to != null;
+    }
+}
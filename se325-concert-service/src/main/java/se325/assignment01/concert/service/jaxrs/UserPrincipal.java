@@ -0,0 +1,32 @@
+package se325.assignment01.concert.service.jaxrs;
+
+import java.security.Principal;
+
+/**
+ * The authenticated user of a request, as set by the {@link AuthenticationFilter}. Resources can get it with:
+ * <code>
+ *     public void myWebMethod(@Context SecurityContext securityContext) {
+ *         UserPrincipal user = (UserPrincipal) securityContext.getUserPrincipal(); // null if not logged in
+ *         // ....
+ *     }
+ * </code>
+ */
+public class UserPrincipal implements Principal {
+
+    private final long id;
+    private final String name;
+
+    public UserPrincipal(long id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,35 @@
+package se325.assignment01.concert.service.mapper;
+
+import se325.assignment01.concert.common.dto.AvailabilityDTO;
+import se325.assignment01.concert.common.dto.PriceBandAvailabilityDTO;
+import se325.assignment01.concert.service.util.SeatMap;
+import se325.assignment01.concert.service.util.TheatreLayout;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mapper class which maps the seat counts of a SeatMap to an AvailabilityDTO object which is sent over the wire
+ */
+public class AvailabilityMapper {
+
+    /**
+     * Converts the numbers of booked and held seats of a concert date, in total and in each price band of the
+     * TheatreLayout, to an AvailabilityDTO object
+     * @param concertId of the concert
+     * @param date of the concert
+     * @param seatMap of the concert date
+     * @return AvailabilityDTO object
+     */
+    public static AvailabilityDTO toDto(long concertId, LocalDateTime date, SeatMap seatMap) {
+        List<PriceBandAvailabilityDTO> priceBands = new ArrayList<>();
+        for (int i = 0; i < TheatreLayout.PRICE_BANDS.length; i++) {
+            TheatreLayout.PriceBand band = TheatreLayout.PRICE_BANDS[i];
+            priceBands.add(new PriceBandAvailabilityDTO(band.name, band.price,
+                    band.numRows * TheatreLayout.NUM_SEATS_PER_ROW, seatMap.getNumBooked(i), seatMap.getNumHeld(i)));
+        }
+        return new AvailabilityDTO(concertId, date, TheatreLayout.NUM_SEATS_IN_THEATRE, seatMap.getNumBooked(),
+                seatMap.getNumHeld(), priceBands);
+    }
+}
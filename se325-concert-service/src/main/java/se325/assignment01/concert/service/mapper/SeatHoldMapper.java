@@ -0,0 +1,21 @@
+package se325.assignment01.concert.service.mapper;
+
+import se325.assignment01.concert.common.dto.SeatHoldDTO;
+import se325.assignment01.concert.service.util.SeatHold;
+
+/**
+ * Mapper class which maps a SeatHold object which the web service keeps to a SeatHoldDTO object which is sent over the wire
+ */
+public class SeatHoldMapper {
+
+    /**
+     * Converts a SeatHold object to a SeatHoldDTO object
+     * @param seatHold object
+     * @return SeatHoldDTO object
+     */
+    public static SeatHoldDTO toDto(SeatHold seatHold) {
+        SeatHoldDTO seatHoldDTO = new SeatHoldDTO(seatHold.getId(), seatHold.getConcertId(), seatHold.getDate(),
+                seatHold.getSeatLabels(), seatHold.getExpiresAt());
+        return seatHoldDTO;
+    }
+}
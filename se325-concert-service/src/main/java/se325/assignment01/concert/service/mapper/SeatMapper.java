@@ -1,7 +1,14 @@
 package se325.assignment01.concert.service.mapper;
 
 import se325.assignment01.concert.common.dto.SeatDTO;
+import se325.assignment01.concert.common.seatmap.SeatMapCodec;
+import se325.assignment01.concert.common.types.BookingStatus;
 import se325.assignment01.concert.service.domain.Seat;
+import se325.assignment01.concert.service.util.SeatMap;
+import se325.assignment01.concert.service.util.TheatreLayout;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Mapper class which maps a Seat object which the database uses to a SeatDTO object which is sent over the wire
@@ -17,4 +24,36 @@ public class SeatMapper {
         SeatDTO seatDTO = new SeatDTO(seat.getLabel(), seat.getPrice());
         return seatDTO;
     }
+
+    /**
+     * Converts the seats of a SeatMap matching the status to SeatDTO objects, pricing them from the TheatreLayout
+     * @param seatMap of a concert date
+     * @param status of the seats to convert, where anything other than Booked or Any means unbooked seats
+     * @return list of SeatDTO objects
+     */
+    public static List<SeatDTO> toDtos(SeatMap seatMap, BookingStatus status) {
+        List<SeatDTO> seatDTOS = new ArrayList<>();
+        for (int row = 0; row < TheatreLayout.NUM_ROWS; row++) {
+            TheatreLayout.PriceBand priceBand = TheatreLayout.priceBandOf(row);
+            for (int seatNum = 1; seatNum <= TheatreLayout.NUM_SEATS_PER_ROW; seatNum++) {
+                if (status == BookingStatus.Any || seatMap.isBooked(row, seatNum) == (status == BookingStatus.Booked)) {
+                    seatDTOS.add(new SeatDTO(TheatreLayout.labelOf(row, seatNum), priceBand.price));
+                }
+            }
+        }
+        return seatDTOS;
+    }
+
+    /**
+     * Converts the booked seats of a SeatMap to the compact binary form of SeatMapCodec
+     * @param seatMap of a concert date
+     * @return the encoded seats
+     */
+    public static byte[] toCompact(SeatMap seatMap) {
+        int[] rowMasks = new int[TheatreLayout.NUM_ROWS];
+        for (int row = 0; row < TheatreLayout.NUM_ROWS; row++) {
+            rowMasks[row] = seatMap.getRowMask(row);
+        }
+        return SeatMapCodec.encode(TheatreLayout.LAYOUT_VERSION, TheatreLayout.NUM_SEATS_PER_ROW, rowMasks);
+    }
 }
@@ -1,127 +1,551 @@
 package se325.assignment01.concert.service.services;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import se325.assignment01.concert.common.dto.*;
+import se325.assignment01.concert.common.seatmap.SeatMapCodec;
+import se325.assignment01.concert.common.types.BatchMode;
 import se325.assignment01.concert.common.types.BookingStatus;
 import se325.assignment01.concert.service.domain.*;
+import se325.assignment01.concert.service.jaxrs.AuthenticationFilter;
 import se325.assignment01.concert.service.jaxrs.LocalDateTimeParam;
+import se325.assignment01.concert.service.jaxrs.UserPrincipal;
 import se325.assignment01.concert.service.mapper.*;
+import se325.assignment01.concert.service.util.ApplicationExecutor;
+import se325.assignment01.concert.service.util.BookingPipeline;
 import se325.assignment01.concert.service.util.Config;
+import se325.assignment01.concert.service.util.FaultInjectingSeatLocking;
+import se325.assignment01.concert.service.util.IdempotencyCache;
+import se325.assignment01.concert.service.util.NotificationDispatcher;
+import se325.assignment01.concert.service.util.Performance;
+import se325.assignment01.concert.service.util.RetryPolicy;
+import se325.assignment01.concert.service.util.SeatHold;
+import se325.assignment01.concert.service.util.SeatHolds;
+import se325.assignment01.concert.service.util.SeatInventory;
+import se325.assignment01.concert.service.util.SeatLockingStrategy;
+import se325.assignment01.concert.service.util.SeatMap;
+import se325.assignment01.concert.service.util.SeatMapStreams;
 import se325.assignment01.concert.service.util.Subscription;
+import se325.assignment01.concert.service.util.SubscriptionRegistry;
+import se325.assignment01.concert.service.util.TheatreLayout;
 
 import javax.persistence.EntityManager;
 import javax.persistence.LockModeType;
 import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceException;
 import javax.persistence.TypedQuery;
 import javax.ws.rs.*;
 import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.CompletionCallback;
+import javax.ws.rs.container.ConnectionCallback;
 import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.*;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
 import java.net.URI;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 
 @Path("/concert-service")
 public class BookingResource {
 
-    //A thread pool to handle the async response
-    private ExecutorService threads = Executors.newCachedThreadPool();
-    //A map to hold the subscribers to each concert (Key = concertIf, Value = all subscribers)
-    private static final Map<Long, List<Subscription>> subscribersToConcert = new ConcurrentHashMap<>();
+    private static Logger LOGGER = LoggerFactory.getLogger(BookingResource.class);
+
+    //The policy for retrying bookings that fail because of a concurrent update
+    private static final RetryPolicy retryPolicy =
+            new RetryPolicy(Config.BOOKING_MAX_ATTEMPTS, Config.BOOKING_RETRY_BACKOFF_MILLIS);
+    //How seats are claimed in the database, and so how concurrent bookings of the same seats are kept apart
+    private static final SeatLockingStrategy seatLocking = Config.FAULT_INJECTION
+            ? new FaultInjectingSeatLocking(SeatLockingStrategy.forName(Config.SEAT_LOCKING))
+            : SeatLockingStrategy.forName(Config.SEAT_LOCKING);
+    //The response header with the number of held seats on the date
+    private static final String SEATS_HELD_HEADER = "X-Seats-Held";
 
     /**
-     * This HTTP method makes a booking
+     * This HTTP method makes a booking. The booking itself is placed on the request thread, or on the booking pipeline's
+     * lane for the concert date if the pipeline is enabled
      * @param bookingRequestDTO
-     * @param cookie
-     * @return
+     * @param response
+     * @param securityContext with the authenticated user
+     * @param idempotencyKey chosen by the client, so that retries of the request get the same response, may be null
+     * @param uriInfo of the request, to build the URI of the new booking
      */
     @POST
     @Path("/bookings")
-    public Response makeBooking(BookingRequestDTO bookingRequestDTO, @CookieParam(Config.CLIENT_COOKIE) Cookie cookie) {
+    public void makeBooking(BookingRequestDTO bookingRequestDTO, @Suspended AsyncResponse response,
+                            @Context SecurityContext securityContext,
+                            @HeaderParam(Config.IDEMPOTENCY_KEY_HEADER) String idempotencyKey, @Context UriInfo uriInfo) {
+        String fingerprint = "bookings " + bookingRequestDTO.getConcertId() + " " + bookingRequestDTO.getDate()
+                + " " + bookingRequestDTO.getSeatLabels();
+        Set<Performance> performances =
+                Set.of(new Performance(bookingRequestDTO.getConcertId(), bookingRequestDTO.getDate()));
+        submitBooking(performances, true, response, securityContext, uriInfo, idempotencyKey, fingerprint,
+                (user, bookingUri) -> placeBooking(user, bookingRequestDTO, bookingUri));
+    }
+
+    /**
+     * This HTTP method books the best available block of adjacent seats in a row, optionally within a price band,
+     * instead of the seats being named by the client
+     * @param bestAvailableRequestDTO
+     * @param response
+     * @param securityContext with the authenticated user
+     * @param idempotencyKey chosen by the client, so that retries of the request get the same response, may be null
+     * @param uriInfo of the request, to build the URI of the new booking
+     */
+    @POST
+    @Path("/bookings/best-available")
+    public void makeBestAvailableBooking(BestAvailableRequestDTO bestAvailableRequestDTO, @Suspended AsyncResponse response,
+                                         @Context SecurityContext securityContext,
+                                         @HeaderParam(Config.IDEMPOTENCY_KEY_HEADER) String idempotencyKey,
+                                         @Context UriInfo uriInfo) {
+        int numSeats = bestAvailableRequestDTO.getNumberOfSeats();
+        TheatreLayout.PriceBand band = null;
+        if (bestAvailableRequestDTO.getPriceBand() != null) {
+            band = TheatreLayout.priceBandNamed(bestAvailableRequestDTO.getPriceBand());
+        }
+        if (numSeats < 1 || numSeats > TheatreLayout.NUM_SEATS_PER_ROW
+                || (bestAvailableRequestDTO.getPriceBand() != null && band == null)) {
+            //The seats must fit in a single row, and the price band must exist
+            response.resume(Response.status(Response.Status.BAD_REQUEST).build());
+            return;
+        }
+
+        TheatreLayout.PriceBand priceBand = band;
+        String fingerprint = "best-available " + bestAvailableRequestDTO.getConcertId() + " "
+                + bestAvailableRequestDTO.getDate() + " " + numSeats + " " + bestAvailableRequestDTO.getPriceBand();
+        Set<Performance> performances =
+                Set.of(new Performance(bestAvailableRequestDTO.getConcertId(), bestAvailableRequestDTO.getDate()));
+        submitBooking(performances, true, response, securityContext, uriInfo, idempotencyKey, fingerprint,
+                (user, bookingUri) -> placeBestAvailableBooking(user, bestAvailableRequestDTO, priceBand, bookingUri));
+    }
+
+    /**
+     * Helper method to check that bookings can be made by the user on the concert dates, and then place them on the
+     * request thread, or on the booking pipeline's lanes for the concert dates if the pipeline is enabled
+     * @param performances the concert dates to book, which may be empty if the placer finds out what to book itself
+     * @param checkPerformances whether to reject the request if any of the concert dates don't exist, rather than
+     *                          leaving it to the placer
+     * @param response to resume with the result
+     * @param securityContext with the authenticated user
+     * @param uriInfo of the request, to build the URI of the new booking
+     * @param idempotencyKey of the request, may be null
+     * @param fingerprint of what the request asks for, to tell retries from other requests with the same key
+     * @param placer which places the booking for the authenticated user
+     */
+    private void submitBooking(Set<Performance> performances, boolean checkPerformances, AsyncResponse response,
+                               SecurityContext securityContext, UriInfo uriInfo, String idempotencyKey,
+                               String fingerprint, BiFunction<User, UriBuilder, Response> placer) {
         EntityManager entityManager = PersistenceManager.instance().createEntityManager();
-        Booking booking;
         User user;
-        Concert concert;
+        Response rejection = null;
 
-        if (cookie == null) { //If cookie is null means client is unauthorised to perform this action
-            return Response.status(Response.Status.UNAUTHORIZED).build();
+        if (securityContext.getUserPrincipal() == null) { //If there is no user the client is unauthorised to perform this action
+            response.resume(Response.status(Response.Status.UNAUTHORIZED).build());
+            return;
+        }
+
+        //Retries are answered before touching the database. Keys are scoped by the user, so that two users can't see
+        //each other's results by choosing the same key
+        long userId = ((UserPrincipal) securityContext.getUserPrincipal()).getId();
+        String cacheKey = (idempotencyKey == null) ? null : userId + " " + idempotencyKey;
+        if (cacheKey != null) {
+            CompletableFuture<IdempotencyCache.Result> previous = IdempotencyCache.instance().begin(cacheKey, fingerprint);
+            if (previous != null) { //If this is a retry then answer it with the result of the first request
+                //If the first request is taking too long, answer with SERVICE_UNAVAILABLE so the client can retry later
+                response.setTimeoutHandler(timedOut ->
+                        timedOut.resume(Response.status(Response.Status.SERVICE_UNAVAILABLE).build()));
+                response.setTimeout(Config.IDEMPOTENCY_WAIT_SECONDS, TimeUnit.SECONDS);
+                previous.thenAccept(result -> response.resume(result.toResponse()));
+                return;
+            }
         }
 
-        int numSeatsAvailable, totalNumSeats;
         try {
             entityManager.getTransaction().begin();
-            user = getUser(cookie, entityManager); //Call the helper method to see if user is authenticated
+            user = getUser(securityContext, entityManager); //Call the helper method to see if user is authenticated
             if (user == null) { //If user is null means client is unauthorised to perform this action
-                return Response.status(Response.Status.UNAUTHORIZED).build();
+                rejection = Response.status(Response.Status.UNAUTHORIZED).build();
+            } else if (checkPerformances) {
+                for (Performance performance : performances) {
+                    //Query the database to find the concert
+                    Concert concert = entityManager.find(Concert.class, performance.getConcertId());
+                    if (concert == null) { //If concert is null means there is no such concert in the database
+                        rejection = Response.status(Response.Status.BAD_REQUEST).build(); //Return BAD_REQUEST response
+                        break;
+                    } else if (!concert.getDates().contains(performance.getDate())) {
+                        //If the booking is for a not existent date for a concert
+                        rejection = Response.status(Response.Status.BAD_REQUEST).build(); //Return BAD_REQUEST response
+                        break;
+                    }
+                }
             }
+        } catch (RuntimeException e) {
+            completeIdempotent(cacheKey, Response.serverError().build());
+            throw e;
+        } finally {
+            entityManager.getTransaction().commit();
+            entityManager.close();
+        }
 
-            //Query the database to find the concert
-            concert = entityManager.find(Concert.class, bookingRequestDTO.getConcertId());
-            if (concert == null) { //If concert is null means there is no such concert in the database
-                return Response.status(Response.Status.BAD_REQUEST).build(); //Return BAD_REQUEST response
-            } else if (!concert.getDates().contains(bookingRequestDTO.getDate())) {
-                //If the booking is for a not existent date for a concert
-                return Response.status(Response.Status.BAD_REQUEST).build(); //Return BAD_REQUEST response
+        if (rejection != null) {
+            completeIdempotent(cacheKey, rejection);
+            response.resume(rejection);
+            return;
+        }
+
+        //The URI of the new booking is resolved now, as the request's UriInfo can only be used on this thread
+        UriBuilder bookingUri = uriInfo.getBaseUriBuilder().path(BookingResource.class).path("bookings/{id}");
+        Runnable command = () -> {
+            Response result;
+            try {
+                result = placer.apply(user, bookingUri);
+            } catch (RuntimeException e) {
+                completeIdempotent(cacheKey, Response.serverError().build());
+                response.resume(e);
+                return;
             }
+            completeIdempotent(cacheKey, result);
+            response.resume(result);
+        };
+        if (!Config.BOOKING_PIPELINE || performances.isEmpty()) {
+            command.run();
+            return;
+        }
+
+        //If a lane is full then too many bookings are waiting for one of these performances, and if the pipeline shuts
+        //down before the booking is placed then it never will be
+        Runnable rejection503 = () -> {
+            Response result = Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+            completeIdempotent(cacheKey, result);
+            response.resume(result);
+        };
+        //Hand the booking to the single writer of each concert date, which completes the response when it is done
+        if (!BookingPipeline.instance().submit(performances, command, rejection503)) {
+            rejection503.run();
+        }
+    }
+
+    /**
+     * Helper method to remember the response to a request with an idempotency key, if it had one
+     * @param cacheKey of the request, or null if it had no idempotency key
+     * @param result the response
+     */
+    private void completeIdempotent(String cacheKey, Response result) {
+        if (cacheKey != null) {
+            IdempotencyCache.instance().complete(cacheKey, result);
+        }
+    }
+
+    /**
+     * Helper method to place a booking for an authenticated user and notify the subscribers of the concert
+     * @param user
+     * @param bookingRequestDTO
+     * @param bookingUri to build the URI of the booking from its id
+     * @return response object
+     */
+    private Response placeBooking(User user, BookingRequestDTO bookingRequestDTO, UriBuilder bookingUri) {
+        //Claim the seats in the in-memory seat map first, so that unavailable seats are rejected without a query
+        if (!SeatInventory.instance().claim(bookingRequestDTO.getDate(), bookingRequestDTO.getSeatLabels())) {
+            return Response.status(Response.Status.FORBIDDEN).build();
+        }
+        return placeClaimedBooking(user, bookingRequestDTO, bookingUri);
+    }
+
+    /**
+     * Helper method to place a booking for the best available seats for an authenticated user
+     * @param user
+     * @param bestAvailableRequestDTO
+     * @param band the price band to book in, or null for any band
+     * @param bookingUri to build the URI of the booking from its id
+     * @return response object
+     */
+    private Response placeBestAvailableBooking(User user, BestAvailableRequestDTO bestAvailableRequestDTO,
+                                               TheatreLayout.PriceBand band, UriBuilder bookingUri) {
+        //Choose and claim the seats in the in-memory seat map in one step, so there is nothing for the client to retry
+        List<String> seatLabels = SeatInventory.instance().claimBestAvailable(bestAvailableRequestDTO.getDate(),
+                bestAvailableRequestDTO.getNumberOfSeats(), band);
+        if (seatLabels == null) { //If seat labels is null means there are not enough adjacent seats left
+            return Response.status(Response.Status.FORBIDDEN).build();
+        }
 
+        BookingRequestDTO bookingRequestDTO = new BookingRequestDTO(bestAvailableRequestDTO.getConcertId(),
+                bestAvailableRequestDTO.getDate(), seatLabels);
+        return placeClaimedBooking(user, bookingRequestDTO, bookingUri);
+    }
+
+    /**
+     * Helper method to place a booking whose seats have already been claimed in the seat map, and notify the
+     * subscribers of the concert
+     * @param user
+     * @param bookingRequestDTO
+     * @param bookingUri to build the URI of the booking from its id
+     * @return response object
+     */
+    private Response placeClaimedBooking(User user, BookingRequestDTO bookingRequestDTO, UriBuilder bookingUri) {
+        Booking booking;
+        try {
             booking = book(user, bookingRequestDTO); //Call the helper method to place a booking on a concert
-            if (booking == null) { //If booking is null means action of booking is not doable
-                return Response.status(Response.Status.FORBIDDEN).build();
+        } catch (PersistenceException e) { //If the booking still conflicted after retrying send back a bad request response
+            if (!RetryPolicy.isRetryable(e)) {
+                throw e;
+            }
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+        if (booking == null) { //If booking is null means action of booking is not doable
+            return Response.status(Response.Status.FORBIDDEN).build();
+        }
+
+        //Have the subscribers of the concert notified in the background, rather than making the client wait for them
+        NotificationDispatcher.instance().publish(bookingRequestDTO.getConcertId(), bookingRequestDTO.getDate());
+        //Send back the generated URI to the client in a 201 response
+        return Response.created(bookingUri.build(booking.getId())).build();
+    }
+
+    /**
+     * This HTTP method makes several bookings for the user at once, with one user lookup, one transaction and one round
+     * of notifications to subscribers. In AllOrNothing mode none of the bookings are made if any of them can't be made.
+     * The batch is placed on the request thread, or once it has reached the front of the booking pipeline's lanes for
+     * all of its concert dates if the pipeline is enabled
+     * @param batchBookingRequestDTO
+     * @param response to resume with the outcome of each booking, in the order they were requested
+     * @param securityContext with the authenticated user
+     * @param idempotencyKey chosen by the client, so that retries of the request get the same response, may be null
+     * @param uriInfo of the request, to build the URIs of the new bookings
+     */
+    @POST
+    @Path("/bookings/batch")
+    @Produces(MediaType.APPLICATION_JSON)
+    public void makeBatchBooking(BatchBookingRequestDTO batchBookingRequestDTO, @Suspended AsyncResponse response,
+                                 @Context SecurityContext securityContext,
+                                 @HeaderParam(Config.IDEMPOTENCY_KEY_HEADER) String idempotencyKey,
+                                 @Context UriInfo uriInfo) {
+        //Each booking is checked when the batch is placed, so that a bad one only fails itself in BestEffort mode
+        Set<Performance> performances = new HashSet<>();
+        StringBuilder fingerprint = new StringBuilder("batch ").append(batchBookingRequestDTO.getMode());
+        for (BookingRequestDTO request : batchBookingRequestDTO.getBookings()) {
+            if (request.getDate() != null) {
+                performances.add(new Performance(request.getConcertId(), request.getDate()));
             }
+            fingerprint.append(" ").append(request.getConcertId()).append(" ").append(request.getDate())
+                    .append(" ").append(request.getSeatLabels());
+        }
+        submitBooking(performances, false, response, securityContext, uriInfo, idempotencyKey, fingerprint.toString(),
+                (user, bookingUri) -> placeBatchBooking(user, batchBookingRequestDTO, bookingUri));
+    }
+
+    /**
+     * Helper method to place the bookings of a batch for an authenticated user and notify the subscribers of the
+     * concerts
+     * @param user
+     * @param batchBookingRequestDTO
+     * @param bookingUri to build the URIs of the bookings from their ids
+     * @return response object with the outcome of each booking, in the order they were requested
+     */
+    private Response placeBatchBooking(User user, BatchBookingRequestDTO batchBookingRequestDTO, UriBuilder bookingUri) {
+        EntityManager entityManager = PersistenceManager.instance().createEntityManager();
+        List<BookingRequestDTO> requests = batchBookingRequestDTO.getBookings();
+        boolean allOrNothing = batchBookingRequestDTO.getMode() != BatchMode.BestEffort;
+        int[] statuses = new int[requests.size()];
+        Booking[] bookings = new Booking[requests.size()];
+        List<Integer> claimed = new ArrayList<>(); //The requests whose seats have been claimed in the seat map
+        boolean written = false;
+        boolean seatsTaken = false; //True if the database found seats already booked that the seat map had free
 
-            //Query to obtain all available seats for a given date
-            TypedQuery<Seat> availableQuery = entityManager.createQuery(
-                    "select s from Seat s where s.date = :date and s.isBooked = :isBooked", Seat.class)
-                    .setParameter("date", bookingRequestDTO.getDate()).setParameter("isBooked", false)
-                    .setLockMode(LockModeType.OPTIMISTIC); //Set lock mode to prevent concurrency issues
-            numSeatsAvailable = availableQuery.getResultList().size();
+        try {
+            entityManager.getTransaction().begin();
 
-            //Query to obtain all seats for a given date
-            TypedQuery<Seat> allQuery = entityManager.createQuery(
-                    "select s from Seat s where s.date = :date", Seat.class)
-                    .setParameter("date", bookingRequestDTO.getDate())
-                    .setLockMode(LockModeType.OPTIMISTIC); //Set lock mode to prevent concurrency issues
-            totalNumSeats = allQuery.getResultList().size();
+            //Check each booking and claim its seats in the in-memory seat map, so that unavailable seats are rejected
+            //without a query
+            for (int i = 0; i < requests.size(); i++) {
+                BookingRequestDTO request = requests.get(i);
+                Concert concert = entityManager.find(Concert.class, request.getConcertId());
+                if (concert == null || !concert.getDates().contains(request.getDate())) {
+                    statuses[i] = Response.Status.BAD_REQUEST.getStatusCode();
+                } else if (!SeatInventory.instance().claim(request.getDate(), request.getSeatLabels())) {
+                    statuses[i] = Response.Status.FORBIDDEN.getStatusCode();
+                } else {
+                    claimed.add(i);
+                }
+            }
 
-        } catch (OptimisticLockException e) { //If this exception is thrown send back a bad request response
-            return Response.status(Response.Status.BAD_REQUEST).build();
+            if (allOrNothing && claimed.size() < requests.size()) { //Give back the seats of the bookings that were fine
+                releaseClaims(requests, claimed, statuses, Response.Status.CONFLICT);
+            } else if (!claimed.isEmpty()) {
+                if (persistBookings(entityManager, user, requests, claimed, bookings)) {
+                    entityManager.getTransaction().commit();
+                    written = true;
+                } else {
+                    seatsTaken = true;
+                }
+            }
+        } catch (PersistenceException e) {
+            if (!RetryPolicy.isRetryable(e)) {
+                releaseClaims(requests, claimed, statuses, Response.Status.INTERNAL_SERVER_ERROR);
+                throw e;
+            }
         } finally {
+            if (entityManager.getTransaction().isActive()) { //The bookings were not written so undo any seats claimed
+                entityManager.getTransaction().rollback();
+            }
+            entityManager.close();
+        }
+
+        //If the database disagreed with the seat map, or a concurrent update got in the way, fall back to the slower
+        //paths: AllOrNothing tries the whole batch again after a concurrent update (but not when seats were already
+        //booked, as that would fail the same way again), BestEffort makes each booking on its own
+        if (!written && !claimed.isEmpty()) {
+            if (allOrNothing) {
+                if (!seatsTaken) {
+                    try {
+                        written = retryPolicy.execute(() -> writeBookings(user, requests, claimed, bookings));
+                    } catch (PersistenceException e) {
+                        if (!RetryPolicy.isRetryable(e)) {
+                            releaseClaims(requests, claimed, statuses, Response.Status.INTERNAL_SERVER_ERROR);
+                            throw e;
+                        }
+                    }
+                }
+                if (!written) {
+                    releaseClaims(requests, claimed, statuses, Response.Status.FORBIDDEN);
+                }
+            } else {
+                for (int i : claimed) {
+                    bookings[i] = null;
+                    Response.Status failure = Response.Status.FORBIDDEN;
+                    try {
+                        bookings[i] = book(user, requests.get(i)); //Releases the seats itself if it fails
+                    } catch (PersistenceException e) {
+                        //Only this booking failed, so the bookings after it are still made (or their seats released)
+                        if (!RetryPolicy.isRetryable(e)) {
+                            LOGGER.error("placeBatchBooking(): Booking " + i + " of the batch failed", e);
+                            failure = Response.Status.INTERNAL_SERVER_ERROR;
+                        }
+                    }
+                    statuses[i] = (bookings[i] == null) ? failure.getStatusCode() : 0;
+                }
+            }
+        }
+
+        //Collect the outcome of each booking, and the performances that were booked
+        List<BookingResultDTO> results = new ArrayList<>();
+        Map<Long, Set<LocalDateTime>> bookedPerformances = new HashMap<>();
+        boolean allBooked = true;
+        for (int i = 0; i < requests.size(); i++) {
+            if (bookings[i] != null && statuses[i] == 0) {
+                results.add(new BookingResultDTO(Response.Status.CREATED.getStatusCode(),
+                        bookingUri.build(bookings[i].getId()).toString()));
+                bookedPerformances.computeIfAbsent(requests.get(i).getConcertId(), id -> new HashSet<>())
+                        .add(requests.get(i).getDate());
+            } else {
+                results.add(new BookingResultDTO(statuses[i], null));
+                allBooked = false;
+            }
+        }
+
+        //Notify the subscribers once per performance, however many bookings of the batch were for it
+        for (Map.Entry<Long, Set<LocalDateTime>> concert : bookedPerformances.entrySet()) {
+            for (LocalDateTime date : concert.getValue()) {
+                NotificationDispatcher.instance().publish(concert.getKey(), date);
+            }
+        }
+
+        GenericEntity<List<BookingResultDTO>> entity = new GenericEntity<>(results){};
+        if (allOrNothing && !allBooked) { //If any booking failed then none were made
+            return Response.status(Response.Status.CONFLICT).entity(entity).build();
+        }
+        return Response.ok(entity).build();
+    }
+
+    /**
+     * Helper method to claim the seats of some bookings in the database and persist the bookings, in the given
+     * transaction
+     * @param entityManager with an active transaction
+     * @param user
+     * @param requests all bookings of the batch
+     * @param claimed the indexes of the bookings to write
+     * @param bookings to fill in with the persisted bookings, by index
+     * @return true if all of the bookings were persisted, false if any of the seats were already booked
+     */
+    private boolean persistBookings(EntityManager entityManager, User user, List<BookingRequestDTO> requests,
+                                    List<Integer> claimed, Booking[] bookings) {
+        for (int i : claimed) {
+            BookingRequestDTO request = requests.get(i);
+            List<Seat> listOfSeats = seatLocking.claim(entityManager, request.getDate(), request.getSeatLabels());
+            if (listOfSeats == null) {
+                return false;
+            }
+
+            bookings[i] = new Booking(request.getDate(), request.getConcertId(), listOfSeats,
+                    entityManager.getReference(User.class, user.getId()));
+            entityManager.persist(bookings[i]); //Persisting the booking will persist the seats as well
+        }
+        return true;
+    }
+
+    /**
+     * Helper method to write some bookings of a batch to the database in a transaction of their own
+     * @return true if all of the bookings were written, false if any of the seats were already booked
+     */
+    private boolean writeBookings(User user, List<BookingRequestDTO> requests, List<Integer> claimed, Booking[] bookings) {
+        EntityManager entityManager = PersistenceManager.instance().createEntityManager();
+
+        try {
+            entityManager.getTransaction().begin();
+            if (!persistBookings(entityManager, user, requests, claimed, bookings)) {
+                return false;
+            }
             entityManager.getTransaction().commit();
+            return true;
+        } finally {
+            if (entityManager.getTransaction().isActive()) { //The bookings failed so undo any seats claimed
+                entityManager.getTransaction().rollback();
+            }
             entityManager.close();
         }
+    }
 
-        //A call to helper method to send notification to subscribers of a concert when a successful booking has been made
-        sendNotificationsToSubs(bookingRequestDTO.getConcertId(), bookingRequestDTO.getDate(),
-                numSeatsAvailable,totalNumSeats);
-        //Send back the generated URI to the client in a 201 response
-        return Response.created(URI.create("/concert-service/bookings/" + booking.getId())).build();
+    /**
+     * Helper method to free the seats claimed in the seat map for bookings of a batch that won't be written, and give
+     * those bookings the status
+     */
+    private void releaseClaims(List<BookingRequestDTO> requests, List<Integer> claimed, int[] statuses,
+                               Response.Status status) {
+        for (int i : claimed) {
+            SeatInventory.instance().release(requests.get(i).getDate(), requests.get(i).getSeatLabels());
+            statuses[i] = status.getStatusCode();
+        }
+        claimed.clear();
     }
 
     /**
      * This HTTP method retrieves the booking matching the id and returns it in a response
      * @param id of the booking
-     * @param cookie
+     * @param securityContext with the authenticated user
      * @return response object
      */
     @GET
     @Path("/bookings/{id}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getBookingsWithId(@PathParam("id") long id, @CookieParam(Config.CLIENT_COOKIE) Cookie cookie) {
+    public Response getBookingsWithId(@PathParam("id") long id, @Context SecurityContext securityContext) {
         EntityManager entityManager = PersistenceManager.instance().createEntityManager();
         User user;
         BookingDTO bookingDTO;
 
-        if (cookie == null) { //If cookie is null means client is unauthorised to perform this action
+        if (securityContext.getUserPrincipal() == null) { //If there is no user the client is unauthorised to perform this action
             return Response.status(Response.Status.UNAUTHORIZED).build();
         }
 
         try {
             entityManager.getTransaction().begin();
-            user = getUser(cookie, entityManager); //Call the helper method to see if user is authenticated
+            user = getUser(securityContext, entityManager); //Call the helper method to see if user is authenticated
             if (user == null) { //If user is null means client is unauthorised to perform this action
                 return Response.status(Response.Status.UNAUTHORIZED).build();
             }
@@ -147,25 +571,25 @@ public class BookingResource {
     }
 
     /**
-     * This HTTP method retrieves all the bookings made by this user using their cookie information as identification
-     * @param cookie
+     * This HTTP method retrieves all the bookings made by the authenticated user
+     * @param securityContext with the authenticated user
      * @return
      */
     @GET
     @Path("/bookings")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getBookingsOfUser(@CookieParam(Config.CLIENT_COOKIE) Cookie cookie) {
+    public Response getBookingsOfUser(@Context SecurityContext securityContext) {
         EntityManager entityManager = PersistenceManager.instance().createEntityManager();
         User user;
         List<BookingDTO> bookingDTOS = new ArrayList<>();
 
-        if (cookie == null) { //If cookie is null means client is unauthorised to perform this action
+        if (securityContext.getUserPrincipal() == null) { //If there is no user the client is unauthorised to perform this action
             return Response.status(Response.Status.UNAUTHORIZED).build();
         }
 
         try {
             entityManager.getTransaction().begin();
-            user = getUser(cookie, entityManager); //Call the helper method to see if user is authenticated
+            user = getUser(securityContext, entityManager); //Call the helper method to see if user is authenticated
             if (user == null) { //If user is null means client is unauthorised to perform this action
                 return Response.status(Response.Status.UNAUTHORIZED).build();
             }
@@ -190,81 +614,251 @@ public class BookingResource {
     }
 
     /**
-     * This HTTP method Retrieves all the seats of a date of a concert
+     * This HTTP method Retrieves all the seats of a date of a concert. The response has an ETag with the version of
+     * the date's seat map, and NOT_MODIFIED is returned if the client already has that version. As the seats can also
+     * be fetched in the compact form (see checkSeatsCompact), every response varies by the Accept header
      * @param status
      * @param dateTimeParam
+     * @param request with the client's If-None-Match header, if any
      * @return
      */
     @GET
     @Path("/seats/{dateTime}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response checkSeats(@QueryParam("status")BookingStatus status, @PathParam("dateTime") LocalDateTimeParam dateTimeParam) {
-        EntityManager entityManager = PersistenceManager.instance().createEntityManager();
+    public Response checkSeats(@QueryParam("status")BookingStatus status, @PathParam("dateTime") LocalDateTimeParam dateTimeParam,
+                               @Context Request request) {
         LocalDateTime dateTime = dateTimeParam.getLocalDateTime();
         List<SeatDTO> seatDTOS = new ArrayList<>();
+
+        //The seats are read from the in-memory seat map of the date, so no database access is needed
+        SeatMap seatMap = SeatInventory.instance().getSeatMap(dateTime);
+        if (seatMap == null) { //If seat map is null means there is no concert on that date, so there are no seats
+            return Response.ok(new GenericEntity<>(seatDTOS){}).header(SEATS_HELD_HEADER, 0)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+        }
+
+        //If the client already has this version of the seats, there is no need to send them again
+        EntityTag tag = seatMapTag(seatMap, "json-" + status);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (notModified != null) {
+            return notModified.tag(tag).header(SEATS_HELD_HEADER, seatMap.getNumHeld())
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+        }
+        seatDTOS = SeatMapper.toDtos(seatMap, status);
+
+        //Encapsulate the list in an appropriate object
+        GenericEntity<List<SeatDTO>> response = new GenericEntity<>(seatDTOS){};
+        //Also tell the client how many of the unbooked seats are held by other users
+        return Response.ok(response).tag(tag).header(SEATS_HELD_HEADER, seatMap.getNumHeld())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+    }
+
+    /**
+     * This HTTP method returns the booked seats on a concert date in the compact binary form of SeatMapCodec, for
+     * clients that ask for it with an Accept header of application/x-seatmap. Like the JSON form, it has an ETag,
+     * NOT_MODIFIED is returned if the client already has the current version, and every response varies by the Accept
+     * header.
+     * <p>
+     * Unlike the JSON form, NOT_FOUND is returned for a date with no concert. The JSON form keeps answering with an
+     * empty list of seats, as it always has, but the compact form always describes every seat in the theatre, so it
+     * has no way to say there are no seats: an empty seat map would say they are all free
+     * @param dateTimeParam of the concert
+     * @param request with the client's If-None-Match header, if any
+     * @return response object with the encoded seats, or NOT_FOUND if there is no concert on that date
+     */
+    @GET
+    @Path("/seats/{dateTime}")
+    @Produces(SeatMapCodec.MEDIA_TYPE + ";qs=0.5") //JSON is preferred for clients that accept either
+    public Response checkSeatsCompact(@PathParam("dateTime") LocalDateTimeParam dateTimeParam,
+                                      @Context Request request) {
+        SeatMap seatMap = SeatInventory.instance().getSeatMap(dateTimeParam.getLocalDateTime());
+        if (seatMap == null) { //If seat map is null means there is no concert on that date
+            return Response.status(Response.Status.NOT_FOUND).header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+        }
+
+        EntityTag tag = seatMapTag(seatMap, "compact");
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (notModified != null) {
+            return notModified.tag(tag).header(SEATS_HELD_HEADER, seatMap.getNumHeld())
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+        }
+        return Response.ok(SeatMapper.toCompact(seatMap)).tag(tag).header(SEATS_HELD_HEADER, seatMap.getNumHeld())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+    }
+
+    /**
+     * Helper method to make the ETag of a representation of a seat map, which changes whenever the seat map does and
+     * whenever the service restarts
+     * @param seatMap of a concert date
+     * @param representation of the seats, e.g. "compact", so that each representation has its own tag
+     * @return the ETag
+     */
+    private static EntityTag seatMapTag(SeatMap seatMap, String representation) {
+        return new EntityTag(seatMap.getVersionTag() + "-" + representation);
+    }
+
+    /**
+     * This HTTP method streams the seats of a concert date as Server-Sent Events: first a snapshot of the booked and
+     * held seats, then the seats booked, held and released as they change
+     * @param dateTimeParam of the concert
+     * @param sink to send the events to
+     * @param sse to create the events with
+     */
+    @GET
+    @Path("/seats/{dateTime}/stream")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void streamSeats(@PathParam("dateTime") LocalDateTimeParam dateTimeParam, @Context SseEventSink sink,
+                            @Context Sse sse) {
+        if (!SeatMapStreams.instance().open(dateTimeParam.getLocalDateTime(), sink, sse)) {
+            throw new NotFoundException(); //There is no concert on that date, so there are no seats to stream
+        }
+    }
+
+    /**
+     * This HTTP method holds seats for the user while they complete their booking. The seats can't be booked by anyone
+     * else until the hold is booked, released or expires
+     * @param bookingRequestDTO with the seats to hold
+     * @param securityContext with the authenticated user
+     * @param uriInfo
+     * @return response object with the hold
+     */
+    @POST
+    @Path("/holds")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response holdSeats(BookingRequestDTO bookingRequestDTO, @Context SecurityContext securityContext,
+                              @Context UriInfo uriInfo) {
+        User user = getUser(securityContext); //Call the helper method to see if user is authenticated
+        if (user == null) { //If user is null means client is unauthorised to perform this action
+            return Response.status(Response.Status.UNAUTHORIZED).build();
+        }
+
+        EntityManager entityManager = PersistenceManager.instance().createEntityManager();
         try {
             entityManager.getTransaction().begin();
-            TypedQuery<Seat> typedQuery; //Query is different based on the status passed in
-            if (status == BookingStatus.Any) {
-                typedQuery = entityManager.createQuery(
-                        "select s from Seat s where s.date = :date", Seat.class)
-                        .setParameter("date", dateTime)
-                        .setLockMode(LockModeType.OPTIMISTIC); //Set lock mode to prevent concurrency issues
-            } else {
-                boolean isBooked = (status == BookingStatus.Booked) ? true : false;
-                typedQuery = entityManager.createQuery(
-                        "select s from Seat s where s.date = :date and s.isBooked = :isBooked", Seat.class)
-                        .setParameter("date", dateTime).setParameter("isBooked", isBooked)
-                        .setLockMode(LockModeType.OPTIMISTIC); //Set lock mode to prevent concurrency issues
-            }
-
-            List<Seat> listOfSeats = typedQuery.getResultList();
-            //Convert all the seats in the list into seatDTO objects so that it can be sent over the wire
-            for (Seat seat: listOfSeats) {
-                seatDTOS.add(SeatMapper.toDto(seat));
+            //Query the database to find the concert
+            Concert concert = entityManager.find(Concert.class, bookingRequestDTO.getConcertId());
+            entityManager.getTransaction().commit();
+            if (concert == null || !concert.getDates().contains(bookingRequestDTO.getDate())) {
+                //If the concert or the date does not exist return BAD_REQUEST response
+                return Response.status(Response.Status.BAD_REQUEST).build();
             }
-
-        } catch (OptimisticLockException e) { //If this exception is thrown send back a bad request response
-            return Response.status(Response.Status.BAD_REQUEST).build();
         } finally {
-            entityManager.getTransaction().commit();
             entityManager.close();
         }
 
-        //Encapsulate the list in an appropriate object
-        GenericEntity<List<SeatDTO>> response = new GenericEntity<>(seatDTOS){};
-        return Response.ok(response).build();
+        SeatHold hold = SeatHolds.instance().hold(user.getId(), bookingRequestDTO.getConcertId(),
+                bookingRequestDTO.getDate(), bookingRequestDTO.getSeatLabels());
+        if (hold == null) { //If hold is null means some of the seats are already booked or held
+            return Response.status(Response.Status.FORBIDDEN).build();
+        }
+
+        URI holdUri = uriInfo.getBaseUriBuilder().path(BookingResource.class).path("holds/{id}").build(hold.getId());
+        return Response.created(holdUri).entity(SeatHoldMapper.toDto(hold)).build();
+    }
+
+    /**
+     * This HTTP method books the seats of a hold made by the user. The booking itself is placed on the request thread,
+     * or on the booking pipeline's lane for the concert date of the hold if the pipeline is enabled
+     * @param id of the hold
+     * @param response
+     * @param securityContext with the authenticated user
+     * @param idempotencyKey chosen by the client, so that retries of the request get the same response, may be null
+     * @param uriInfo of the request, to build the URI of the new booking
+     */
+    @POST
+    @Path("/holds/{id}/booking")
+    public void bookHold(@PathParam("id") long id, @Suspended AsyncResponse response,
+                         @Context SecurityContext securityContext,
+                         @HeaderParam(Config.IDEMPOTENCY_KEY_HEADER) String idempotencyKey, @Context UriInfo uriInfo) {
+        //The hold is only looked up here to find its lane, and is checked again once the booking is placed. If it has
+        //already ended, the placer answers straight away, after any earlier request with the same key has been answered
+        SeatHold hold = SeatHolds.instance().get(id);
+        Set<Performance> performances = (hold == null) ? Set.of()
+                : Set.of(new Performance(hold.getConcertId(), hold.getDate()));
+        submitBooking(performances, true, response, securityContext, uriInfo, idempotencyKey, "holds " + id,
+                (user, bookingUri) -> placeHeldBooking(user, id, bookingUri));
+    }
+
+    /**
+     * Helper method to book the seats of a hold made by an authenticated user
+     * @param user
+     * @param id of the hold
+     * @param bookingUri to build the URI of the booking from its id
+     * @return response object
+     */
+    private Response placeHeldBooking(User user, long id, UriBuilder bookingUri) {
+        SeatHold hold = SeatHolds.instance().get(id);
+        if (hold == null) { //If hold is null means there is no such hold, or it has expired
+            return Response.status(Response.Status.NOT_FOUND).build();
+        } else if (hold.getUserId() != user.getId()) { //Users can only book their own holds
+            return Response.status(Response.Status.FORBIDDEN).build();
+        }
+
+        //End the hold, and move its seats from held to booked in the seat map
+        if (!SeatHolds.instance().take(hold)) { //If the hold has just expired then it can't be booked any more
+            return Response.status(Response.Status.NOT_FOUND).build();
+        } else if (!SeatInventory.instance().claimHeld(hold.getDate(), hold.getSeatLabels())) {
+            return Response.status(Response.Status.FORBIDDEN).build();
+        }
+
+        BookingRequestDTO bookingRequestDTO = new BookingRequestDTO(hold.getConcertId(), hold.getDate(), hold.getSeatLabels());
+        return placeClaimedBooking(user, bookingRequestDTO, bookingUri);
+    }
+
+    /**
+     * This HTTP method releases the seats of a hold made by the user
+     * @param id of the hold
+     * @param securityContext with the authenticated user
+     * @return response object
+     */
+    @DELETE
+    @Path("/holds/{id}")
+    public Response releaseHold(@PathParam("id") long id, @Context SecurityContext securityContext) {
+        User user = getUser(securityContext);
+        if (user == null) { //If user is null means client is unauthorised to perform this action
+            return Response.status(Response.Status.UNAUTHORIZED).build();
+        }
+
+        SeatHold hold = SeatHolds.instance().get(id);
+        if (hold == null) { //If hold is null means there is no such hold, or it has expired
+            return Response.status(Response.Status.NOT_FOUND).build();
+        } else if (hold.getUserId() != user.getId()) { //Users can only release their own holds
+            return Response.status(Response.Status.FORBIDDEN).build();
+        } else if (!SeatHolds.instance().release(hold)) { //If the hold has just ended then there is nothing to release
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        return Response.noContent().build();
     }
 
     /**
      * This HTTP method is to subscribe to the notification system the web service provides
      * @param concertInfoSubscriptionDTO
      * @param response
-     * @param cookie
+     * @param securityContext with the authenticated user
      */
     @POST
     @Path("/subscribe/concertInfo")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
     public void subscribe(ConcertInfoSubscriptionDTO concertInfoSubscriptionDTO,
-                          @Suspended AsyncResponse response, @CookieParam(Config.CLIENT_COOKIE) Cookie cookie) {
+                          @Suspended AsyncResponse response, @Context SecurityContext securityContext) {
         EntityManager entityManager = PersistenceManager.instance().createEntityManager();
         User user;
         long id;
         Concert concert;
 
-        if (cookie == null) { //If cookie is null means client is unauthorised to perform this action
+        if (securityContext.getUserPrincipal() == null) { //If there is no user the client is unauthorised to perform this action
             //Instead of returning using the handling thread, use another thread specific to handle these types of responses
-            threads.submit(() -> response.resume(Response.status(Response.Status.UNAUTHORIZED).build()));
+            resumeLater(response, Response.Status.UNAUTHORIZED);
             return;
         }
 
         try {
             entityManager.getTransaction().begin();
-            user = getUser(cookie, entityManager); //Call the helper method to see if user is authenticated
+            user = getUser(securityContext, entityManager); //Call the helper method to see if user is authenticated
             if (user == null) { //If user is null means client is unauthorised to perform this action
                 //Instead of returning using the handling thread, use another thread specific to handle these types of responses
-                threads.submit(() -> response.resume(Response.status(Response.Status.UNAUTHORIZED).build()));
+                resumeLater(response, Response.Status.UNAUTHORIZED);
                 return;
             }
 
@@ -272,21 +866,34 @@ public class BookingResource {
             concert = entityManager.find(Concert.class, id); //Find the concert in the database which matches the id
             if (concert == null) { //If concert is null means no such concert in the database
                 //Instead of returning using the handling thread, use another thread specific to handle these types of responses
-                threads.submit(() -> response.resume(Response.status(Response.Status.BAD_REQUEST).build()));
+                resumeLater(response, Response.Status.BAD_REQUEST);
                 return;
             }
             //If there are dates in the client is trying to sign up for notifications for that are not valid dates return BAD_REQUEST
             else if (!(concert.getDates().contains(concertInfoSubscriptionDTO.getDate()))) {
                 //Instead of returning using the handling thread, use another thread specific to handle these types of responses
-                threads.submit(() -> response.resume(Response.status(Response.Status.BAD_REQUEST).build()));
+                resumeLater(response, Response.Status.BAD_REQUEST);
                 return;
             }
 
-            //If code makes it this far then we add the valid subscription into the subscriber map
-            List<Subscription> subs = subscribersToConcert.getOrDefault(concert.getId(), new ArrayList<>());
+            //If code makes it this far then we add the valid subscription into the subscription registry, unless it is full
             Subscription subscription = new Subscription(concertInfoSubscriptionDTO, response);
-            subs.add(subscription);
-            subscribersToConcert.put(concert.getId(), subs); //Replace the subscriber list in the map
+            SubscriptionRegistry registry = SubscriptionRegistry.instance();
+
+            //The subscription is removed as soon as it is answered or its client goes away, so none are left behind
+            response.register((CompletionCallback) throwable -> registry.remove(subscription));
+            response.register((ConnectionCallback) disconnected -> registry.remove(subscription));
+            //If the threshold isn't reached in time, answer with SERVICE_UNAVAILABLE so the client can subscribe again
+            response.setTimeoutHandler(timedOut -> {
+                registry.remove(subscription);
+                timedOut.resume(Response.status(Response.Status.SERVICE_UNAVAILABLE).build());
+            });
+            response.setTimeout(Config.SUBSCRIPTION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+            if (!registry.add(subscription)) { //If there are too many subscriptions waiting, return SERVICE_UNAVAILABLE
+                //Instead of returning using the handling thread, use another thread specific to handle these types of responses
+                resumeLater(response, Response.Status.SERVICE_UNAVAILABLE);
+            }
 
         } finally {
             entityManager.getTransaction().commit();
@@ -295,101 +902,99 @@ public class BookingResource {
     }
 
     /**
-     * Helper method to notify the subscribers of the particular concert with certain conditions are met
-     * @param concertId
-     * @param dateTime of the concert
-     * @param numSeatsAvailable in the concert
-     * @param totalNumSeats in the conert
+     * Helper method to answer an async request with a status on the application executor, rather than on the thread
+     * handling the request
+     * @param response
+     * @param status
      */
-    public void sendNotificationsToSubs(long concertId, LocalDateTime dateTime, int numSeatsAvailable, int totalNumSeats) {
-        //Obtain the subscriber list of the concert
-        List<Subscription> subscriptionList = subscribersToConcert.get(concertId);
-
-        if (subscriptionList == null) { //If the list is null meaning that no-one subscribed, don't do anything and return
-            return;
-        }
-
-        for (Subscription sub: subscriptionList) { //For each subscriber we perform a series of checks to see if we should notify them
-            ConcertInfoSubscriptionDTO concertInfoSubscriptionDTO = sub.getConcertInfoSubscriptionDTO();
-            int percentageBooked = sub.getConcertInfoSubscriptionDTO().getPercentageBooked();
-
-            //If the date of the concert the user is subscribed to is the same as the new booking date
-            if (dateTime.isEqual(concertInfoSubscriptionDTO.getDate())) {
+    private void resumeLater(AsyncResponse response, Response.Status status) {
+        ApplicationExecutor.instance().execute(() -> response.resume(Response.status(status).build()));
+    }
 
-                //Perform calculation to see if the number of unavailable seats is more the threshold
-                //The threshold is a user defined percentage for which if the percentage of unavailable seats exceeds
-                //This amount, they want to receive a notification
-                boolean aboutToSellOut;
-                double percentageOfSeatsBooked = (100 - ((numSeatsAvailable*100/totalNumSeats)));
-                aboutToSellOut = (percentageBooked <= percentageOfSeatsBooked) ? true : false;
+    /**
+     * Helper method to book concerts whose seats have been claimed in the seat map. The seats are released again if
+     * the booking can't be written to the database
+     * @param user
+     * @param bookingRequestDTO
+     * @return booking object
+     */
+    private Booking book(User user, BookingRequestDTO bookingRequestDTO) {
+        List<String> seatLabels = bookingRequestDTO.getSeatLabels();
+        LocalDateTime date = bookingRequestDTO.getDate();
 
-                if (aboutToSellOut) { //If the threshold for notifying the subscriber is met then notify them
-                    AsyncResponse response = sub.getResponse(); //Obtain the async response from the subscribe object
-                    ConcertInfoNotificationDTO concertInfoNotificationDTO = new ConcertInfoNotificationDTO(numSeatsAvailable);
-                    response.resume(Response.ok(concertInfoNotificationDTO).build()); //Notify the user about the impending sellout
-                }
+        Booking booking = null;
+        try {
+            //Write the booking to the database, trying again a bounded number of times on a concurrent update
+            booking = retryPolicy.execute(() -> writeBooking(user, bookingRequestDTO));
+            return booking;
+        } finally {
+            //If the booking was not written to the database then the seats must be freed in the seat map again
+            if (booking == null) {
+                SeatInventory.instance().release(date, seatLabels);
             }
         }
     }
 
     /**
-     * Helper method to book concerts
+     * Helper method to claim the seats of a booking in the database and persist the booking, in one transaction
      * @param user
      * @param bookingRequestDTO
-     * @return booking object
+     * @return booking object, or null if any of the seats were already booked
      */
-    private Booking book(User user, BookingRequestDTO bookingRequestDTO) {
+    private Booking writeBooking(User user, BookingRequestDTO bookingRequestDTO) {
         EntityManager entityManager = PersistenceManager.instance().createEntityManager();
-        Booking booking;
-        List<String> seatLabels = bookingRequestDTO.getSeatLabels();
         LocalDateTime date = bookingRequestDTO.getDate();
-        long concertId = bookingRequestDTO.getConcertId();
 
         try {
             entityManager.getTransaction().begin();
 
-            //Retrieve all the seats that are not booked on the date of the user made booking
-            TypedQuery<Seat> typedQuery = entityManager.createQuery(
-                    "select s from Seat s where s.label in :seats and s.isBooked = :status and s.date = :date", Seat.class)
-                    .setParameter("seats", seatLabels).setParameter("status", false)
-                    .setParameter("date", date)
-                    .setLockMode(LockModeType.OPTIMISTIC); //Set lock mode to prevent concurrency issues
-            List<Seat> listOfSeatsAvailable = typedQuery.getResultList();
-
-            //If there are seats that are booked among the seats the user is booking return null
-            if (!(listOfSeatsAvailable.size() == seatLabels.size())) {
+            //Mark the seats as booked, which fails if any of the seats have been booked in the meantime
+            List<Seat> listOfSeats = seatLocking.claim(entityManager, date, bookingRequestDTO.getSeatLabels());
+            if (listOfSeats == null) {
                 return null; //Return null because the system does not allow for placing bookings where seats are booked
             }
-            //At this point all the seats in the user booking can be booked and so set all the seats to booked
-            for (Seat seatToBook: listOfSeatsAvailable) {
-                seatToBook.setBooked(true);
-            }
 
-            booking = new Booking(date, concertId, listOfSeatsAvailable, user);
+            //The user may come from another entity manager, so only its id is used
+            Booking booking = new Booking(date, bookingRequestDTO.getConcertId(), listOfSeats,
+                    entityManager.getReference(User.class, user.getId()));
             entityManager.persist(booking); //Persisting the booking will persist the seats as well
-        } catch (OptimisticLockException e) { //If this exception is thrown try to book again
-            entityManager.close();
-            booking = book(user, bookingRequestDTO);
-        }
-        finally {
             entityManager.getTransaction().commit();
+            return booking;
+        } finally {
+            if (entityManager.getTransaction().isActive()) { //The booking failed so undo any seats claimed
+                entityManager.getTransaction().rollback();
+            }
             entityManager.close();
         }
-        return booking;
     }
 
     /**
-     * Helper method to authenticate user
-     * @param cookie of the user
+     * Helper method to get the authenticated user without an entity manager
+     * @param securityContext of the request
+     * @return user object with only the id and username set, or null if the user is not authenticated
+     */
+    private User getUser(SecurityContext securityContext) {
+        UserPrincipal principal = (UserPrincipal) securityContext.getUserPrincipal();
+        if (principal == null) {
+            return null;
+        }
+
+        User user = new User();
+        user.setId(principal.getId());
+        user.setUsername(principal.getName());
+        return user;
+    }
+
+    /**
+     * Helper method to get the authenticated user, which the {@link AuthenticationFilter} has already resolved from the
+     * auth cookie
+     * @param securityContext of the request
      * @param entityManager
-     * @return user object
+     * @return a reference to the user, which is not loaded unless used, or null if the user is not authenticated
      */
-    private User getUser(Cookie cookie, EntityManager entityManager) {
-        //Finds the user with the matching cookie
-        TypedQuery<User> userQuery = entityManager.createQuery("select u from User u where u.cookie = :cookie", User.class)
-                .setParameter("cookie", cookie.getValue());
-        User user = userQuery.getResultList().stream().findFirst().orElse(null);
-        return user; //Return the user if retrieved otherwise return null
+    private User getUser(SecurityContext securityContext, EntityManager entityManager) {
+        UserPrincipal principal = (UserPrincipal) securityContext.getUserPrincipal();
+        return (principal == null) ? null : entityManager.getReference(User.class, principal.getId());
     }
 }
 
@@ -3,7 +3,10 @@ package se325.assignment01.concert.service.services;
 import javax.ws.rs.ApplicationPath;
 import javax.ws.rs.core.Application;
 
+import se325.assignment01.concert.service.jaxrs.AuthenticationFilter;
+import se325.assignment01.concert.service.util.ApplicationExecutor;
 import se325.assignment01.concert.service.util.ConcertUtils;
+import se325.assignment01.concert.service.util.Config;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -24,7 +27,13 @@ public class ConcertApplication extends Application {
         classes.add(PerformerResource.class);
         classes.add(LoginResource.class);
         classes.add(BookingResource.class);
+        classes.add(MetricsResource.class);
+        classes.add(AuthenticationFilter.class);
+        if (Config.FAULT_INJECTION) {
+            classes.add(FaultInjectionResource.class);
+        }
         singletons.add(PersistenceManager.instance());
+        ApplicationExecutor.instance(); //Started here, and shut down by the ConcertServiceListener on undeploy
 
         ConcertUtils.initConcerts();
     }
@@ -1,107 +1,218 @@
 package se325.assignment01.concert.service.services;
 
-import se325.assignment01.concert.common.dto.*;
-import se325.assignment01.concert.service.domain.*;
-import se325.assignment01.concert.service.mapper.*;
+import se325.assignment01.concert.common.dto.AvailabilityDTO;
+import se325.assignment01.concert.common.dto.ConcertDTO;
+import se325.assignment01.concert.common.dto.ConcertSummaryDTO;
+import se325.assignment01.concert.common.dto.PerformanceDTO;
+import se325.assignment01.concert.service.jaxrs.CatalogueFilter;
+import se325.assignment01.concert.service.jaxrs.LocalDateTimeParam;
+import se325.assignment01.concert.service.mapper.AvailabilityMapper;
+import se325.assignment01.concert.service.util.CatalogueCache;
+import se325.assignment01.concert.service.util.CatalogueQueries;
+import se325.assignment01.concert.service.util.Config;
+import se325.assignment01.concert.service.util.Page;
+import se325.assignment01.concert.service.util.RenderedJson;
+import se325.assignment01.concert.service.util.SeatInventory;
+import se325.assignment01.concert.service.util.SeatMap;
 
-import javax.persistence.EntityManager;
 import javax.ws.rs.*;
 import javax.ws.rs.core.*;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
- * This class deals with all requests pertaining to concerts e.g. getting concert with id
+ * This class deals with all requests pertaining to concerts e.g. getting concert with id. The concerts are read from
+ * the CatalogueCache, which only goes to the database when they may have changed, already rendered to JSON with an
+ * ETag, so NOT_MODIFIED is returned if the client already has them. Listings that are paged or filtered (see
+ * CatalogueFilter) are instead queried from the database, with a Link header to the next page
  */
 @Path("/concert-service")
 public class ConcertResource {
 
     /**
-     * This HTTP method retrieves the concert matching the id in the database and returns a response along with the DTO object
+     * This HTTP method retrieves the concert matching the id and returns a response along with the DTO object
      * @param id of the concert requested
+     * @param request with the client's If-None-Match header, if any
+     * @param headers with the client's Accept-Encoding header, if any
      * @return response object
      */
     @GET
     @Path("/concerts/{id}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getConcertWithId(@PathParam("id") long id) {
-        EntityManager entityManager = PersistenceManager.instance().createEntityManager();
-        Concert concert;
-        try {
-            entityManager.getTransaction().begin();
-            concert = entityManager.find(Concert.class, id); //Find the concert in the database matching the id
-
-            //Return a NOT_FOUND error if there is not such performer with that id
-            if (concert == null) {
-                return Response.status(Response.Status.NOT_FOUND).build();
-            }
+    public Response getConcertWithId(@PathParam("id") long id, @Context Request request, @Context HttpHeaders headers) {
+        RenderedJson concertJson = CatalogueCache.instance().getConcertJson(id); //Find the concert matching the id
 
-            return Response.ok(ConcertMapper.toDto(concert)).build(); //Return an OK response along with the concertDTO object
-        } finally {
-            entityManager.getTransaction().commit();
-            entityManager.close();
+        //Return a NOT_FOUND error if there is not such concert with that id
+        if (concertJson == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
         }
+
+        return concertJson.toResponse(request, headers); //Return an OK response along with the concertDTO object
     }
 
     /**
-     * This HTTP method retrieves all the concerts in the database and returns the list in a response
+     * This HTTP method retrieves all the concerts, or a page of the concerts matching the filter, and returns the list
+     * in a response
+     * @param filter the page and filters, if any
+     * @param uriInfo of the request, to link to the next page with
+     * @param request with the client's If-None-Match header, if any
+     * @param headers with the client's Accept-Encoding header, if any
      * @return response object
      */
     @GET
     @Path("/concerts")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getAllConcerts() {
-        EntityManager entityManager = PersistenceManager.instance().createEntityManager();
-        List<ConcertDTO> concertDTOS = new ArrayList<>();
-
-        try {
-            entityManager.getTransaction().begin();
-            //Query the database for all concerts and store it in a list
-            List<Concert> listOfConcerts = entityManager.createQuery("Select c from Concert c", Concert.class).getResultList();
-            //Convert all the concerts in the list into concertDTO objects so that it can be sent over the wire
-            for (Concert concert: listOfConcerts) {
-                concertDTOS.add(ConcertMapper.toDto(concert));
-            }
-
-        } finally {
-            entityManager.getTransaction().commit();
-            entityManager.close();
+    public Response getAllConcerts(@BeanParam CatalogueFilter filter, @Context UriInfo uriInfo,
+                                   @Context Request request, @Context HttpHeaders headers) {
+        if (filter.isEmpty()) {
+            return CatalogueCache.instance().getConcertsJson().toResponse(request, headers);
+        }
+        if (!filter.isValid()) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
         }
 
-        //Encapsulate the list in an appropriate object
-        GenericEntity<List<ConcertDTO>> response = new GenericEntity<>(concertDTOS){};
-        return Response.ok(response).build();
+        Page<ConcertDTO> page = CatalogueQueries.findConcerts(filter);
+        GenericEntity<List<ConcertDTO>> response = new GenericEntity<>(page.getItems()){};
+        return Response.ok(response).links(page.links(uriInfo)).build();
     }
 
     /**
-     * This HTTP method retrieves all the concerts in the database and returns the list as ConcertSummaryDTO objects in a response
+     * This HTTP method retrieves all the concerts, or a page of the concerts matching the filter, and returns the list
+     * as ConcertSummaryDTO objects in a response
+     * @param filter the page and filters, if any
+     * @param uriInfo of the request, to link to the next page with
+     * @param request with the client's If-None-Match header, if any
+     * @param headers with the client's Accept-Encoding header, if any
      * @return
      */
     @GET
     @Path("/concerts/summaries")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getConcertSummaries() {
-        EntityManager entityManager = PersistenceManager.instance().createEntityManager();
-        List<ConcertSummaryDTO> concertSummaryDto = new ArrayList<>();
-
-        try {
-            entityManager.getTransaction().begin();
-            //Query the database for all concerts and store it in a list
-            List<Concert> listOfConcerts = entityManager.createQuery("Select c from Concert c", Concert.class).getResultList();
-            //Convert all the concerts in the list into concertSummaryDTO objects so that it can be sent over the wire
-            for (Concert concert: listOfConcerts) {
-                concertSummaryDto.add(ConcertMapper.toSummaryDto(concert));
-            }
+    public Response getConcertSummaries(@BeanParam CatalogueFilter filter, @Context UriInfo uriInfo,
+                                        @Context Request request, @Context HttpHeaders headers) {
+        if (filter.isEmpty()) {
+            return CatalogueCache.instance().getConcertSummariesJson().toResponse(request, headers);
+        }
+        if (!filter.isValid()) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+
+        Page<ConcertSummaryDTO> page = CatalogueQueries.findConcertSummaries(filter);
+        GenericEntity<List<ConcertSummaryDTO>> response = new GenericEntity<>(page.getItems()){};
+        return Response.ok(response).links(page.links(uriInfo)).build();
+    }
 
-        } finally {
-            entityManager.getTransaction().commit();
-            entityManager.close();
+    /**
+     * This HTTP method searches the concerts' titles and blurbs and their performers' names and genres, and returns
+     * the matching concerts as ConcertSummaryDTO objects in a response, best match first. Each word of the query may
+     * be the start of a word, e.g. "/concerts/search?q=fleet mac"
+     * @param query the words to search for
+     * @param limit the most concerts to return, if not the default page size
+     * @return response object
+     */
+    @GET
+    @Path("/concerts/search")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response searchConcerts(@QueryParam("q") String query, @QueryParam("limit") Integer limit) {
+        //Return a BAD_REQUEST error if there is nothing to search for
+        if (query == null || query.isBlank() || (limit != null && limit < 1)) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
         }
 
-        //Encapsulate the list in an appropriate object
-        GenericEntity<List<ConcertSummaryDTO>> response = new GenericEntity<>(concertSummaryDto){};
+        int maxResults = limit == null ? Config.DEFAULT_PAGE_SIZE : Math.min(limit, Config.MAX_PAGE_SIZE);
+        List<ConcertSummaryDTO> results = CatalogueCache.instance().search(query, maxResults);
+        GenericEntity<List<ConcertSummaryDTO>> response = new GenericEntity<>(results){};
         return Response.ok(response).build();
     }
 
-}
+    /**
+     * This HTTP method retrieves the performances of all concerts between two dates, earliest first, and returns them
+     * as PerformanceDTO objects in a response, along with how many seats are left for each. For example, the shows
+     * on in a week are at "/performances?from=2019-09-09T00:00:00&amp;to=2019-09-16T00:00:00"
+     * @param fromParam the earliest date, inclusive, or no earliest date if not given
+     * @param toParam the latest date, exclusive, or no latest date if not given
+     * @param limit the most performances to return, if not the default page size
+     * @return response object
+     */
+    @GET
+    @Path("/performances")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getPerformances(@QueryParam("from") LocalDateTimeParam fromParam,
+                                    @QueryParam("to") LocalDateTimeParam toParam, @QueryParam("limit") Integer limit) {
+        LocalDateTime from = fromParam == null ? null : fromParam.getLocalDateTime();
+        LocalDateTime to = toParam == null ? null : toParam.getLocalDateTime();
+
+        //Return a BAD_REQUEST error if the range ends before it starts
+        if ((from != null && to != null && to.isBefore(from)) || (limit != null && limit < 1)) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+
+        int maxResults = limit == null ? Config.DEFAULT_PAGE_SIZE : Math.min(limit, Config.MAX_PAGE_SIZE);
+        List<PerformanceDTO> performances = CatalogueCache.instance().getPerformances(from, to, maxResults);
+        GenericEntity<List<PerformanceDTO>> response = new GenericEntity<>(performances){};
+        return Response.ok(response).build();
+    }
+
+    /**
+     * This HTTP method counts the booked and held seats of each date of the concert matching the id, in total and in
+     * each price band, and returns them as AvailabilityDTO objects in a response, earliest date first
+     * @param id of the concert
+     * @return response object
+     */
+    @GET
+    @Path("/concerts/{id}/availability")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getConcertAvailability(@PathParam("id") long id) {
+        ConcertDTO concert = CatalogueCache.instance().getConcert(id); //Find the concert matching the id
+
+        //Return a NOT_FOUND error if there is not such concert with that id
+        if (concert == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
 
+        GenericEntity<List<AvailabilityDTO>> response = new GenericEntity<>(availabilityOf(concert)){};
+        return Response.ok(response).build();
+    }
+
+    /**
+     * This HTTP method counts the booked and held seats of each date of each of the concerts matching the ids, e.g.
+     * "/concerts/availability?id=1&amp;id=4", and returns them as AvailabilityDTO objects in a response, concert by
+     * concert. Ids of concerts which don't exist are left out
+     * @param ids of the concerts
+     * @return response object
+     */
+    @GET
+    @Path("/concerts/availability")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getConcertsAvailability(@QueryParam("id") List<Long> ids) {
+        //Return a BAD_REQUEST error if there are no concerts to count, or too many
+        if (ids.isEmpty() || ids.size() > Config.MAX_PAGE_SIZE) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+
+        List<AvailabilityDTO> availability = new ArrayList<>();
+        for (long id : ids) {
+            ConcertDTO concert = CatalogueCache.instance().getConcert(id);
+            if (concert != null) {
+                availability.addAll(availabilityOf(concert));
+            }
+        }
+        GenericEntity<List<AvailabilityDTO>> response = new GenericEntity<>(availability){};
+        return Response.ok(response).build();
+    }
+
+    /**
+     * Counts the seats of each date of the concert from the SeatInventory, so no seats are read from the database
+     */
+    private static List<AvailabilityDTO> availabilityOf(ConcertDTO concert) {
+        List<AvailabilityDTO> availability = new ArrayList<>();
+        concert.getDates().stream().sorted().forEach(date -> {
+            SeatMap seatMap = SeatInventory.instance().getSeatMap(date);
+            if (seatMap != null) {
+                availability.add(AvailabilityMapper.toDto(concert.getId(), date, seatMap));
+            }
+        });
+        return availability;
+    }
+}
@@ -0,0 +1,33 @@
+package se325.assignment01.concert.service.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se325.assignment01.concert.service.util.ApplicationExecutor;
+import se325.assignment01.concert.service.util.BookingPipeline;
+import se325.assignment01.concert.service.util.NotificationDispatcher;
+import se325.assignment01.concert.service.util.SeatHolds;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * This class stops the threads the concert service started when the web application is undeployed, so that they
+ * don't outlive it. It is registered in web.xml.
+ */
+public class ConcertServiceListener implements ServletContextListener {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(ConcertServiceListener.class);
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        LOGGER.info("contextDestroyed(): Stopping the concert service's threads");
+        BookingPipeline.shutdown();
+        NotificationDispatcher.shutdown();
+        SeatHolds.instance().shutdown();
+        ApplicationExecutor.shutdown();
+    }
+}
@@ -0,0 +1,42 @@
+package se325.assignment01.concert.service.services;
+
+import se325.assignment01.concert.service.util.FaultInjectingSeatLocking;
+
+import javax.ws.rs.*;
+import javax.ws.rs.core.Response;
+import java.util.List;
+
+/**
+ * This service allows the integration tests to make seat claims fail via an HTTP request, to check how bookings
+ * recover from failures. It is only deployed when fault injection is enabled.
+ */
+@Path("/concert-service-test/faults")
+public class FaultInjectionResource {
+
+    /**
+     * Makes the next claims of a seat fail
+     * @param label of the seat
+     * @param faults how each of the next claims of the seat fails, e.g. "ERROR"
+     * @return response object
+     */
+    @POST
+    public Response injectFaults(@QueryParam("label") String label,
+                                 @QueryParam("fault") List<FaultInjectingSeatLocking.Fault> faults) {
+        if (label == null || faults.isEmpty()) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+
+        FaultInjectingSeatLocking.inject(label, faults);
+        return Response.noContent().build();
+    }
+
+    /**
+     * Drops all faults that have not happened yet
+     * @return response object
+     */
+    @DELETE
+    public Response clearFaults() {
+        FaultInjectingSeatLocking.clear();
+        return Response.noContent().build();
+    }
+}
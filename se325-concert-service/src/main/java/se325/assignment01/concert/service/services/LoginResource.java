@@ -4,6 +4,8 @@ import se325.assignment01.concert.common.dto.*;
 import se325.assignment01.concert.service.domain.*;
 import se325.assignment01.concert.service.mapper.*;
 import se325.assignment01.concert.service.util.Config;
+import se325.assignment01.concert.service.util.SessionCache;
+import se325.assignment01.concert.service.util.SessionTokens;
 
 import javax.persistence.EntityManager;
 import javax.persistence.LockModeType;
@@ -40,11 +42,17 @@ public class LoginResource {
 
             if (user == null) { //If user is null means that user is not in database meaning not authorised
                 return Response.status(Response.Status.UNAUTHORIZED).build();
+            } else if (Config.SESSION_TOKENS.equals("signed")) {
+                //A signed token can be checked without the database, so there is nothing to save on the user
+                String token = SessionTokens.instance().issue(user.getId(), user.getUsername());
+                return Response.ok().cookie(new NewCookie(Config.CLIENT_COOKIE, token)).build();
             } else { //Otherwise create a auth-cookie and send it back to client
                 NewCookie cookie = new NewCookie(Config.CLIENT_COOKIE, UUID.randomUUID().toString());
                 user.setCookie(cookie.getValue());
                 //Since User object has a cookie field, we need to update database so that database knows the client is authorised
                 entityManager.merge(user);
+                //Cache the new session, which also ends any previous session of the user
+                SessionCache.instance().put(cookie.getValue(), user.getId(), user.getUsername());
 
                 return Response.ok().cookie(cookie).build();
             }
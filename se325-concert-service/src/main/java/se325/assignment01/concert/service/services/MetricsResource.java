@@ -0,0 +1,49 @@
+package se325.assignment01.concert.service.services;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import se325.assignment01.concert.service.util.Metrics;
+
+import javax.persistence.EntityManager;
+import javax.ws.rs.*;
+import javax.ws.rs.core.*;
+
+/**
+ * This class deals with requests for the service's own metrics e.g. how many subscriptions are waiting
+ */
+@Path("/concert-service")
+public class MetricsResource {
+
+    //The hits and misses of Hibernate's second-level and query caches, read before the first metrics are returned
+    static {
+        Metrics.instance().gauge("hibernate.secondLevelCache.hits", () -> getStatistics().getSecondLevelCacheHitCount());
+        Metrics.instance().gauge("hibernate.secondLevelCache.misses", () -> getStatistics().getSecondLevelCacheMissCount());
+        Metrics.instance().gauge("hibernate.secondLevelCache.puts", () -> getStatistics().getSecondLevelCachePutCount());
+        Metrics.instance().gauge("hibernate.queryCache.hits", () -> getStatistics().getQueryCacheHitCount());
+        Metrics.instance().gauge("hibernate.queryCache.misses", () -> getStatistics().getQueryCacheMissCount());
+    }
+
+    /**
+     * This HTTP method returns the current value of every metric, as a JSON object of metric names to values
+     * @return response object
+     */
+    @GET
+    @Path("/metrics")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getMetrics() {
+        return Response.ok(Metrics.instance().snapshot()).build();
+    }
+
+    /**
+     * Returns Hibernate's statistics for the current EntityManagerFactory, which is replaced whenever the database is
+     * reset.
+     */
+    private static Statistics getStatistics() {
+        EntityManager entityManager = PersistenceManager.instance().createEntityManager();
+        try {
+            return entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        } finally {
+            entityManager.close();
+        }
+    }
+}
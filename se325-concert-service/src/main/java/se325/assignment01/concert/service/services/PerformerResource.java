@@ -1,75 +1,69 @@
 package se325.assignment01.concert.service.services;
 
-import se325.assignment01.concert.common.dto.*;
-import se325.assignment01.concert.service.domain.*;
-import se325.assignment01.concert.service.mapper.*;
+import se325.assignment01.concert.common.dto.PerformerDTO;
+import se325.assignment01.concert.service.jaxrs.CatalogueFilter;
+import se325.assignment01.concert.service.util.CatalogueCache;
+import se325.assignment01.concert.service.util.CatalogueQueries;
+import se325.assignment01.concert.service.util.Page;
+import se325.assignment01.concert.service.util.RenderedJson;
 
-import javax.persistence.EntityManager;
 import javax.ws.rs.*;
 import javax.ws.rs.core.*;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
- * This class deals with all requests pertaining to performers e.g. getting performers with id
+ * This class deals with all requests pertaining to performers e.g. getting performers with id. The performers are
+ * read from the CatalogueCache, which only goes to the database when they may have changed, already rendered to JSON
+ * with an ETag, so NOT_MODIFIED is returned if the client already has them. Listings that are paged or filtered (see
+ * CatalogueFilter) are instead queried from the database, with a Link header to the next page
  */
 @Path("/concert-service")
 public class PerformerResource {
 
     /**
-     * This HTTP method retrieves the performer matching the id in the database and returns a response along with the DTO object
+     * This HTTP method retrieves the performer matching the id and returns a response along with the DTO object
      * @param id of the performer requested
+     * @param request with the client's If-None-Match header, if any
+     * @param headers with the client's Accept-Encoding header, if any
      * @return response object
      */
     @GET
     @Path("/performers/{id}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getPerformerWithId(@PathParam("id") long id) {
-        EntityManager entityManager = PersistenceManager.instance().createEntityManager();
-        Performer performer;
-        try {
-            entityManager.getTransaction().begin();
-            performer = entityManager.find(Performer.class, id); //Find the performer in the database matching the id
+    public Response getPerformerWithId(@PathParam("id") long id, @Context Request request, @Context HttpHeaders headers) {
+        RenderedJson performerJson = CatalogueCache.instance().getPerformerJson(id); //Find the performer matching the id
 
-            //Return a NOT_FOUND error if there is not such performer with that id
-            if (performer == null) {
-                return Response.status(Response.Status.NOT_FOUND).build();
-            }
-
-        } finally {
-            entityManager.getTransaction().commit();
-            entityManager.close();
+        //Return a NOT_FOUND error if there is not such performer with that id
+        if (performerJson == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
         }
-        return Response.ok(PerformerMapper.toDto(performer)).build(); //Return an OK response along with the performerDTO object
+
+        return performerJson.toResponse(request, headers); //Return an OK response along with the performerDTO object
     }
 
     /**
-     * This HTTP method retrieves all the performers in the database and returns the list in a response
+     * This HTTP method retrieves all the performers, or a page of the performers matching the filter, and returns the
+     * list in a response
+     * @param filter the page and filters, if any
+     * @param uriInfo of the request, to link to the next page with
+     * @param request with the client's If-None-Match header, if any
+     * @param headers with the client's Accept-Encoding header, if any
      * @return response object
      */
     @GET
     @Path("/performers")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getAllPerformers() {
-        EntityManager entityManager = PersistenceManager.instance().createEntityManager();
-        List<PerformerDTO> performerDTOS = new ArrayList<>();
-
-        try {
-            entityManager.getTransaction().begin();
-            //Query the database for all performers and store it in a list
-            List<Performer> listOfPerformers = entityManager.createQuery("Select p from Performer p", Performer.class).getResultList();
-            //Convert all the performers in the list into performerDTO objects so that it can be sent over the wire
-            for (Performer performer: listOfPerformers) {
-                performerDTOS.add(PerformerMapper.toDto(performer));
-            }
-
-        } finally {
-            entityManager.getTransaction().commit();
-            entityManager.close();
+    public Response getAllPerformers(@BeanParam CatalogueFilter filter, @Context UriInfo uriInfo,
+                                     @Context Request request, @Context HttpHeaders headers) {
+        if (filter.isEmpty()) {
+            return CatalogueCache.instance().getPerformersJson().toResponse(request, headers);
+        }
+        if (!filter.isValid()) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
         }
 
-        //Encapsulate the list in an appropriate object
-        GenericEntity<List<PerformerDTO>> response = new GenericEntity<>(performerDTOS){};
-        return Response.ok(response).build();
+        Page<PerformerDTO> page = CatalogueQueries.findPerformers(filter);
+        GenericEntity<List<PerformerDTO>> response = new GenericEntity<>(page.getItems()){};
+        return Response.ok(response).links(page.links(uriInfo)).build();
     }
 }
@@ -0,0 +1,109 @@
+package se325.assignment01.concert.service.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Singleton class with the one executor the whole service uses for work handed off from request threads, e.g.
+ * resuming AsyncResponses. Where the JVM supports virtual threads, each task gets a virtual thread of its own;
+ * otherwise tasks run on a bounded pool of {@link Config#EXECUTOR_THREADS} platform threads, and once its queue is full
+ * the submitting thread runs the task itself rather than more threads being made.
+ * <p>
+ * Created when the application starts and shut down when it is undeployed.
+ */
+public class ApplicationExecutor {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(ApplicationExecutor.class);
+
+    private static ApplicationExecutor _instance = null;
+
+    private final ExecutorService executor;
+    private final ThreadPoolExecutor pool; //Null when virtual threads are used
+    private final AtomicInteger activeTasks = new AtomicInteger();
+
+    protected ApplicationExecutor(int numThreads, int queueCapacity) {
+        ExecutorService virtualThreads = newVirtualThreadPerTaskExecutor();
+        if (virtualThreads != null) {
+            executor = virtualThreads;
+            pool = null;
+            LOGGER.info("ApplicationExecutor(): Using virtual threads");
+        } else {
+            AtomicInteger threadCount = new AtomicInteger();
+            pool = new ThreadPoolExecutor(numThreads, numThreads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), task -> {
+                Thread thread = new Thread(task, "concert-executor-" + threadCount.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.CallerRunsPolicy());
+            pool.allowCoreThreadTimeOut(true); //Idle threads aren't kept around
+            executor = pool;
+            LOGGER.info("ApplicationExecutor(): Using a pool of " + numThreads + " threads");
+        }
+
+        Metrics.instance().gauge("executor.active", activeTasks::get);
+        Metrics.instance().gauge("executor.queued", () -> pool == null ? 0 : pool.getQueue().size());
+    }
+
+    public static synchronized ApplicationExecutor instance() {
+        if (_instance == null) {
+            _instance = new ApplicationExecutor(Config.EXECUTOR_THREADS, Config.EXECUTOR_QUEUE_CAPACITY);
+        }
+        return _instance;
+    }
+
+    /**
+     * Shuts down the executor, if it was created, waiting briefly for the running tasks to finish.
+     */
+    public static synchronized void shutdown() {
+        if (_instance == null) {
+            return;
+        }
+
+        _instance.executor.shutdown();
+        try {
+            if (!_instance.executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                _instance.executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            _instance.executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        _instance = null;
+    }
+
+    /**
+     * Runs the task on the executor. The task must deal with its own exceptions.
+     */
+    public void execute(Runnable task) {
+        executor.execute(() -> {
+            activeTasks.incrementAndGet();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOGGER.error("execute(): Task failed", e);
+            } finally {
+                activeTasks.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Looks up Executors.newVirtualThreadPerTaskExecutor() by reflection, as it only exists from Java 21 on.
+     *
+     * @return the executor, or null if the JVM doesn't support virtual threads
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) { //Missing, or a preview feature not enabled
+            return null;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package se325.assignment01.concert.service.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Singleton class that applies booking commands one at a time per concert date. Each command is routed by its concert
+ * id and date to one of a fixed number of lanes, and each lane is a single writer thread taking commands from a
+ * bounded ring buffer in the order they arrived. Bookings for the same performance therefore never race each other,
+ * while bookings for different performances are spread over the lanes (one per core by default).
+ * <p>
+ * A command for performances on more than one lane, e.g. a batch of bookings, is queued on each of their lanes at once
+ * behind a gate, and runs once every one of those lanes has reached it, while the others wait. As such commands are
+ * queued on all their lanes in one step, any two of them are in the same order on every lane they share, so the lanes
+ * can't end up waiting on each other.
+ * <p>
+ * Only used when {@link Config#BOOKING_PIPELINE} is enabled.
+ */
+public class BookingPipeline {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(BookingPipeline.class);
+
+    private static BookingPipeline _instance = null;
+
+    private final List<BlockingQueue<Command>> lanes;
+    private final Thread[] writers;
+
+    protected BookingPipeline(int numLanes, int laneCapacity) {
+        lanes = new ArrayList<>(numLanes);
+        writers = new Thread[numLanes];
+        for (int i = 0; i < numLanes; i++) {
+            BlockingQueue<Command> lane = new ArrayBlockingQueue<>(laneCapacity);
+            lanes.add(lane);
+
+            Thread writer = new Thread(() -> drain(lane), "booking-lane-" + i);
+            writer.setDaemon(true);
+            writer.start();
+            writers[i] = writer;
+        }
+    }
+
+    public static synchronized BookingPipeline instance() {
+        if (_instance == null) {
+            _instance = new BookingPipeline(Config.BOOKING_PIPELINE_LANES, Config.BOOKING_PIPELINE_CAPACITY);
+        }
+        return _instance;
+    }
+
+    /**
+     * Stops the lanes' writer threads, if they were started. Commands still queued are abandoned instead of run.
+     */
+    public static synchronized void shutdown() {
+        if (_instance == null) {
+            return;
+        }
+
+        _instance.stop();
+        _instance = null;
+    }
+
+    /**
+     * Stops the lanes' writer threads, and abandons the commands still queued.
+     */
+    void stop() {
+        for (Thread writer : writers) {
+            writer.interrupt();
+        }
+        //Commands still queued will never run, so let them answer their clients instead
+        for (BlockingQueue<Command> lane : lanes) {
+            List<Command> dropped = new ArrayList<>();
+            lane.drainTo(dropped);
+            for (Command command : dropped) {
+                try {
+                    command.abandon();
+                } catch (RuntimeException e) {
+                    LOGGER.error("stop(): Abandoning booking command failed", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues a booking command on the lanes of the given performances. The command runs on one of those lanes' writer
+     * threads after all commands queued before it for each of the lanes, and the lanes take nothing else while it runs.
+     * It may block, e.g. on the database or while backing off before retrying a transaction, but that holds up every
+     * command behind it on those lanes, so it should do no more than the booking itself. It must deal with its own
+     * exceptions (e.g. by resuming the client's AsyncResponse with them).
+     *
+     * @param performances the performances being booked, of which there must be at least one
+     * @param command      the booking command
+     * @param abandon      what to do instead of the command if the pipeline shuts down before it runs, e.g. answer the
+     *                     client with a 503
+     * @return false if any of the lanes is full and the command was not queued, in which case neither is done
+     */
+    public boolean submit(Collection<Performance> performances, Runnable command, Runnable abandon) {
+        Set<Integer> laneIndexes = new TreeSet<>();
+        for (Performance performance : performances) {
+            laneIndexes.add(Math.floorMod(performance.hashCode(), lanes.size()));
+        }
+        if (laneIndexes.size() == 1) {
+            return lanes.get(laneIndexes.iterator().next()).offer(new Command(command, abandon));
+        }
+
+        Gate gate = new Gate(command, abandon, laneIndexes.size());
+        synchronized (this) { //So that gates are in the same order on every lane
+            for (int laneIndex : laneIndexes) {
+                if (!lanes.get(laneIndex).offer(gate)) {
+                    gate.cancel();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void drain(BlockingQueue<Command> lane) {
+        while (true) {
+            Command command;
+            try {
+                command = lane.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            try {
+                command.run();
+            } catch (RuntimeException e) { //Keep the lane running for the commands behind this one
+                LOGGER.error("drain(): Booking command failed", e);
+            }
+        }
+    }
+
+    /**
+     * A booking command, and what to do instead if the pipeline shuts down before it runs. Only one of them is done.
+     */
+    private static class Command {
+        private final Runnable command;
+        private final Runnable abandon;
+        private final AtomicBoolean done = new AtomicBoolean(false);
+
+        private Command(Runnable command, Runnable abandon) {
+            this.command = command;
+            this.abandon = abandon;
+        }
+
+        void run() {
+            if (done.compareAndSet(false, true)) {
+                command.run();
+            }
+        }
+
+        void abandon() {
+            if (done.compareAndSet(false, true)) {
+                abandon.run();
+            }
+        }
+
+        /**
+         * Makes sure neither is done, as the command could not be queued.
+         */
+        void cancel() {
+            done.set(true);
+        }
+    }
+
+    /**
+     * A command queued on several lanes, which holds up each lane's writer until all of the lanes have reached it. The
+     * writer of the last lane to reach it runs the command, and then lets the others carry on.
+     */
+    private static final class Gate extends Command {
+        private int lanesToArrive;
+        private boolean open = false; //True once the command has run, or will never run
+
+        private Gate(Runnable command, Runnable abandon, int numLanes) {
+            super(command, abandon);
+            this.lanesToArrive = numLanes;
+        }
+
+        @Override
+        void run() {
+            synchronized (this) {
+                if (open) {
+                    return;
+                }
+                if (--lanesToArrive > 0) {
+                    try {
+                        while (!open) {
+                            wait();
+                        }
+                    } catch (InterruptedException e) { //The pipeline is shutting down
+                        Thread.currentThread().interrupt();
+                    }
+                    return;
+                }
+            }
+
+            try {
+                super.run();
+            } finally {
+                release();
+            }
+        }
+
+        @Override
+        void abandon() {
+            try {
+                super.abandon();
+            } finally {
+                release();
+            }
+        }
+
+        @Override
+        void cancel() {
+            super.cancel();
+            release(); //Let the lanes it was already queued on go past it
+        }
+
+        private synchronized void release() {
+            open = true;
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package se325.assignment01.concert.service.util;
+
+import org.hibernate.annotations.QueryHints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se325.assignment01.concert.common.dto.ConcertDTO;
+import se325.assignment01.concert.common.dto.ConcertSummaryDTO;
+import se325.assignment01.concert.common.dto.PerformanceDTO;
+import se325.assignment01.concert.common.dto.PerformerDTO;
+import se325.assignment01.concert.service.domain.Concert;
+import se325.assignment01.concert.service.domain.Performer;
+import se325.assignment01.concert.service.mapper.ConcertMapper;
+import se325.assignment01.concert.service.mapper.PerformerMapper;
+import se325.assignment01.concert.service.services.PersistenceManager;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Singleton class that keeps the concerts and performers, already mapped to DTOs, rendered to JSON and indexed for
+ * searching and by date, so that they are only read from the database and serialised when they may have changed rather than on
+ * every request. The catalogue is loaded on first use, and again after {@link #invalidate()} is called by whatever changes the concerts or
+ * performers. If {@link Config#CATALOGUE_TTL_SECONDS} is set, an older catalogue is also reloaded in the background,
+ * while requests are still answered from the old one.
+ * <p>
+ * The cached DTOs are shared between requests, so must not be modified.
+ */
+public class CatalogueCache {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(CatalogueCache.class);
+
+    private static final CatalogueCache _instance = new CatalogueCache(Config.CATALOGUE_TTL_SECONDS);
+
+    /**
+     * The concerts and performers as they were loaded.
+     */
+    private static final class Catalogue {
+        private final List<ConcertDTO> concerts = new ArrayList<>();
+        private final List<ConcertSummaryDTO> summaries = new ArrayList<>();
+        private final Map<Long, ConcertDTO> concertsById = new HashMap<>();
+        private final List<PerformerDTO> performers = new ArrayList<>();
+        private final Map<Long, PerformerDTO> performersById = new HashMap<>();
+        private final Map<Long, RenderedJson> concertJsonById = new HashMap<>();
+        private final Map<Long, RenderedJson> performerJsonById = new HashMap<>();
+        private RenderedJson concertsJson;
+        private RenderedJson summariesJson;
+        private RenderedJson performersJson;
+        private SearchIndex searchIndex;
+        private PerformanceIndex performanceIndex;
+        private final long loadedAtNanos = System.nanoTime();
+    }
+
+    private final long ttlNanos;
+    private volatile Catalogue current;
+    //Bumped on every invalidation, so that a load which started before it doesn't store what it loaded
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final AtomicLong numLoads = new AtomicLong();
+
+    protected CatalogueCache(long ttlSeconds) {
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        Metrics.instance().gauge("catalogue.loads", numLoads::get);
+    }
+
+    public static CatalogueCache instance() {
+        return _instance;
+    }
+
+    /**
+     * Returns all concerts.
+     */
+    public List<ConcertDTO> getConcerts() {
+        return Collections.unmodifiableList(catalogue().concerts);
+    }
+
+    /**
+     * Returns a summary of each concert.
+     */
+    public List<ConcertSummaryDTO> getConcertSummaries() {
+        return Collections.unmodifiableList(catalogue().summaries);
+    }
+
+    /**
+     * Returns the concert with the given id, or null if there is no such concert.
+     */
+    public ConcertDTO getConcert(long id) {
+        return catalogue().concertsById.get(id);
+    }
+
+    /**
+     * Returns all performers.
+     */
+    public List<PerformerDTO> getPerformers() {
+        return Collections.unmodifiableList(catalogue().performers);
+    }
+
+    /**
+     * Returns the performer with the given id, or null if there is no such performer.
+     */
+    public PerformerDTO getPerformer(long id) {
+        return catalogue().performersById.get(id);
+    }
+
+    /**
+     * Returns all concerts, rendered to JSON.
+     */
+    public RenderedJson getConcertsJson() {
+        return catalogue().concertsJson;
+    }
+
+    /**
+     * Returns a summary of each concert, rendered to JSON.
+     */
+    public RenderedJson getConcertSummariesJson() {
+        return catalogue().summariesJson;
+    }
+
+    /**
+     * Returns the concert with the given id rendered to JSON, or null if there is no such concert.
+     */
+    public RenderedJson getConcertJson(long id) {
+        return catalogue().concertJsonById.get(id);
+    }
+
+    /**
+     * Returns all performers, rendered to JSON.
+     */
+    public RenderedJson getPerformersJson() {
+        return catalogue().performersJson;
+    }
+
+    /**
+     * Returns the performer with the given id rendered to JSON, or null if there is no such performer.
+     */
+    public RenderedJson getPerformerJson(long id) {
+        return catalogue().performerJsonById.get(id);
+    }
+
+    /**
+     * Returns the summaries of the concerts matching the search, best match first.
+     *
+     * @param query the words to search for, which may be the start of words
+     * @param limit the most concerts to return
+     * @see SearchIndex#search(String, int)
+     */
+    public List<ConcertSummaryDTO> search(String query, int limit) {
+        return catalogue().searchIndex.search(query, limit);
+    }
+
+    /**
+     * Returns the performances between the two dates, earliest first.
+     *
+     * @param from  the earliest date, inclusive, or null for the first performance
+     * @param to    the latest date, exclusive, or null for the last performance
+     * @param limit the most performances to return
+     * @see PerformanceIndex#between(LocalDateTime, LocalDateTime, int)
+     */
+    public List<PerformanceDTO> getPerformances(LocalDateTime from, LocalDateTime to, int limit) {
+        return catalogue().performanceIndex.between(from, to, limit);
+    }
+
+    /**
+     * Drops the cached catalogue, so the next request loads it from the database again. Should be called whenever the
+     * concerts or performers in the database change.
+     */
+    public synchronized void invalidate() {
+        generation.incrementAndGet();
+        current = null;
+    }
+
+    private Catalogue catalogue() {
+        Catalogue catalogue = current;
+        if (catalogue == null) {
+            return loadIfMissing();
+        }
+
+        //If the catalogue is too old, reload it in the background, and answer from the old one in the meantime
+        boolean expired = ttlNanos > 0 && System.nanoTime() - catalogue.loadedAtNanos > ttlNanos;
+        if (expired && refreshing.compareAndSet(false, true)) {
+            ApplicationExecutor.instance().execute(() -> {
+                try {
+                    load();
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        }
+        return catalogue;
+    }
+
+    /**
+     * Loads the catalogue unless another thread has loaded it while this one was waiting.
+     */
+    private synchronized Catalogue loadIfMissing() {
+        Catalogue catalogue = current;
+        return catalogue != null ? catalogue : load();
+    }
+
+    private Catalogue load() {
+        long loadGeneration = generation.get();
+        Catalogue catalogue = new Catalogue();
+
+        EntityManager entityManager = PersistenceManager.instance().createEntityManager();
+        try {
+            entityManager.getTransaction().begin();
+            List<Concert> concerts = entityManager.createQuery("select c from Concert c", Concert.class)
+                    .setHint(QueryHints.CACHEABLE, true).getResultList();
+            for (Concert concert : concerts) {
+                ConcertDTO concertDTO = ConcertMapper.toDto(concert);
+                catalogue.concerts.add(concertDTO);
+                catalogue.summaries.add(ConcertMapper.toSummaryDto(concert));
+                catalogue.concertsById.put(concertDTO.getId(), concertDTO);
+            }
+            List<Performer> performers =
+                    entityManager.createQuery("select p from Performer p", Performer.class)
+                            .setHint(QueryHints.CACHEABLE, true).getResultList();
+            for (Performer performer : performers) {
+                PerformerDTO performerDTO = PerformerMapper.toDto(performer);
+                catalogue.performers.add(performerDTO);
+                catalogue.performersById.put(performerDTO.getId(), performerDTO);
+            }
+        } finally {
+            entityManager.getTransaction().commit();
+            entityManager.close();
+        }
+
+        //Render the responses and index the concerts once now, rather than on every request
+        catalogue.searchIndex = new SearchIndex(catalogue.concerts, catalogue.summaries);
+        catalogue.performanceIndex = new PerformanceIndex(catalogue.concerts, catalogue.summaries);
+        catalogue.concertsJson = RenderedJson.of(catalogue.concerts);
+        catalogue.summariesJson = RenderedJson.of(catalogue.summaries);
+        catalogue.performersJson = RenderedJson.of(catalogue.performers);
+        for (ConcertDTO concertDTO : catalogue.concerts) {
+            catalogue.concertJsonById.put(concertDTO.getId(), RenderedJson.of(concertDTO));
+        }
+        for (PerformerDTO performerDTO : catalogue.performers) {
+            catalogue.performerJsonById.put(performerDTO.getId(), RenderedJson.of(performerDTO));
+        }
+
+        numLoads.incrementAndGet();
+        LOGGER.debug("load(): Loaded " + catalogue.concerts.size() + " concerts and " + catalogue.performers.size()
+                + " performers");
+        synchronized (this) {
+            if (generation.get() == loadGeneration) { //Otherwise it may be older than the invalidation, so isn't kept
+                current = catalogue;
+            }
+        }
+        return catalogue;
+    }
+}
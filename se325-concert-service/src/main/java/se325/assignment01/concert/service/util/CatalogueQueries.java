@@ -0,0 +1,122 @@
+package se325.assignment01.concert.service.util;
+
+import se325.assignment01.concert.common.dto.ConcertDTO;
+import se325.assignment01.concert.common.dto.ConcertSummaryDTO;
+import se325.assignment01.concert.common.dto.PerformerDTO;
+import se325.assignment01.concert.service.domain.Concert;
+import se325.assignment01.concert.service.domain.Performer;
+import se325.assignment01.concert.service.jaxrs.CatalogueFilter;
+import se325.assignment01.concert.service.mapper.ConcertMapper;
+import se325.assignment01.concert.service.mapper.PerformerMapper;
+import se325.assignment01.concert.service.services.PersistenceManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Utility class that pages through and filters the concerts and performers in the database. The filters and the page
+ * boundary are all predicates of the query, and pages are keyset-based (ordered by id, starting after the last id of
+ * the previous page), so a page costs the same however far into the catalogue it is.
+ */
+public class CatalogueQueries {
+
+    /**
+     * Returns a page of the concerts matching the filter.
+     */
+    public static Page<ConcertDTO> findConcerts(CatalogueFilter filter) {
+        return find("select distinct c from Concert c" + concertJoins(filter), "c", Concert.class, filter,
+                ConcertMapper::toDto, ConcertDTO::getId);
+    }
+
+    /**
+     * Returns a page of the summaries of the concerts matching the filter. Only the columns of the summaries are read.
+     */
+    public static Page<ConcertSummaryDTO> findConcertSummaries(CatalogueFilter filter) {
+        return find("select distinct new " + ConcertSummaryDTO.class.getName() + "(c.id, c.title, c.imageName)"
+                        + " from Concert c" + concertJoins(filter), "c", ConcertSummaryDTO.class, filter,
+                summary -> summary, ConcertSummaryDTO::getId);
+    }
+
+    /**
+     * Returns a page of the performers matching the filter. With a date range, only performers of concerts in that
+     * range match.
+     */
+    public static Page<PerformerDTO> findPerformers(CatalogueFilter filter) {
+        String jpql = filter.hasDateRange()
+                ? "select distinct p from Concert c join c.performers p join c.dates d"
+                : "select p from Performer p";
+        return find(jpql, "p", Performer.class, filter, PerformerMapper::toDto, PerformerDTO::getId);
+    }
+
+    private static String concertJoins(CatalogueFilter filter) {
+        return (filter.hasDateRange() ? " join c.dates d" : "") + (filter.getGenre() != null ? " join c.performers p" : "");
+    }
+
+    /**
+     * Runs the query with the filter's predicates added, reading one more item than the page size to find out whether
+     * there is a next page.
+     *
+     * @param jpql    the select and from clauses, with the concert dates joined as "d" if there is a date range, and
+     *                the performers as "p" if there is a genre
+     * @param alias   the alias of the entity being paged through
+     * @param type    the type of the query's results
+     * @param filter  the filter
+     * @param toItem  converts a result to an item of the page
+     * @param idOfItem the id of an item, to start the next page after
+     */
+    private static <R, T> Page<T> find(String jpql, String alias, Class<R> type, CatalogueFilter filter,
+                                       Function<R, T> toItem, Function<T, Long> idOfItem) {
+        List<String> predicates = new ArrayList<>();
+        if (filter.getAfter() != null) {
+            predicates.add(alias + ".id > :after");
+        }
+        if (filter.getFrom() != null) {
+            predicates.add("d >= :from");
+        }
+        if (filter.getTo() != null) {
+            predicates.add("d < :to");
+        }
+        if (filter.getGenre() != null) {
+            predicates.add("p.genre = :genre");
+        }
+        String where = predicates.isEmpty() ? "" : " where " + String.join(" and ", predicates);
+
+        EntityManager entityManager = PersistenceManager.instance().createEntityManager();
+        try {
+            entityManager.getTransaction().begin();
+            TypedQuery<R> query = entityManager.createQuery(jpql + where + " order by " + alias + ".id", type)
+                    .setMaxResults(filter.getLimit() + 1);
+            if (filter.getAfter() != null) {
+                query.setParameter("after", filter.getAfter());
+            }
+            if (filter.getFrom() != null) {
+                query.setParameter("from", filter.getFrom());
+            }
+            if (filter.getTo() != null) {
+                query.setParameter("to", filter.getTo());
+            }
+            if (filter.getGenre() != null) {
+                query.setParameter("genre", filter.getGenre());
+            }
+
+            List<T> items = new ArrayList<>();
+            for (R result : query.getResultList()) {
+                items.add(toItem.apply(result));
+            }
+
+            //If there was an item beyond the page, then there is a next page, starting after the last item of this one
+            Long nextAfter = null;
+            if (items.size() > filter.getLimit()) {
+                items.remove(items.size() - 1);
+                nextAfter = idOfItem.apply(items.get(items.size() - 1));
+            }
+            return new Page<>(items, nextAfter);
+        } finally {
+            entityManager.getTransaction().commit();
+            entityManager.close();
+        }
+    }
+}
@@ -60,6 +60,17 @@ public class ConcertUtils {
             }
 
             LOGGER.debug("initConcerts(): Created " + seatCount + " seats!");
+
+            // Rebuild the in-memory seat maps from the seats we just persisted. Any seat holds are for the old seats, any
+            // remembered booking results for the old bookings, and any sessions for the old logins. The catalogue is
+            // reloaded too, in case the concerts were changed along with the seats.
+            SeatHolds.instance().clear();
+            IdempotencyCache.instance().clear();
+            SessionCache.instance().clear();
+            CatalogueCache.instance().invalidate();
+            em.getTransaction().begin();
+            SeatInventory.instance().load(allDates, em);
+            em.getTransaction().commit();
         } finally {
             em.close();
         }
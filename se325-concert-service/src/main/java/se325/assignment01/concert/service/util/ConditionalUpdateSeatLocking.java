@@ -0,0 +1,36 @@
+package se325.assignment01.concert.service.util;
+
+import se325.assignment01.concert.service.domain.Seat;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Claims seats with a single conditional UPDATE, which only books seats that are not booked yet. If fewer rows are
+ * updated than seats requested, another booking got some of the seats first, and the claim fails after that one
+ * statement without ever loading a seat.
+ * <p>
+ * A claim that succeeds takes a second statement to load the seats it booked. The Booking refers to its seats by
+ * their database ids, and the labels and prices the caller has don't include those ids.
+ */
+public class ConditionalUpdateSeatLocking implements SeatLockingStrategy {
+
+    @Override
+    public List<Seat> claim(EntityManager em, LocalDateTime date, List<String> labels) {
+        //A bulk update does not increment the version, so do it by hand for any reader relying on it
+        int numUpdated = em.createQuery(
+                "update Seat s set s.isBooked = true, s.version = s.version + 1 " +
+                        "where s.date = :date and s.label in :labels and s.isBooked = false")
+                .setParameter("date", date).setParameter("labels", labels)
+                .executeUpdate();
+        if (numUpdated != labels.size()) {
+            return null;
+        }
+
+        //The booking needs the seat entities (for their ids), which are now known to be ours
+        return em.createQuery("select s from Seat s where s.date = :date and s.label in :labels", Seat.class)
+                .setParameter("date", date).setParameter("labels", labels)
+                .getResultList();
+    }
+}
@@ -3,4 +3,81 @@ package se325.assignment01.concert.service.util;
 public class Config {
 
     public static final String CLIENT_COOKIE = "auth";
+
+    // The SeatLockingStrategy used to claim seats in the database: "conditional" (a single conditional UPDATE),
+    // "optimistic" (rely on the seats' @Version), "pessimistic" (SELECT ... FOR UPDATE) or "skipLocked" (SELECT ...
+    // FOR UPDATE SKIP LOCKED). Can be set with -Dconcert.seatLocking=...
+    public static final String SEAT_LOCKING = System.getProperty("concert.seatLocking", "conditional");
+
+    // Whether the integration tests may make seat claims fail on purpose, through the FaultInjectingSeatLocking. Only
+    // enabled for the tests, with -Dconcert.faultInjection=true
+    public static final boolean FAULT_INJECTION = Boolean.getBoolean("concert.faultInjection");
+
+    // How many times a booking is attempted when its transaction fails due to a concurrent update, and how long to
+    // wait between attempts (multiplied by the attempt number).
+    public static final int BOOKING_MAX_ATTEMPTS = 3;
+    public static final long BOOKING_RETRY_BACKOFF_MILLIS = 10;
+
+    // Whether bookings are applied one at a time per concert date by the BookingPipeline, rather than on the thread
+    // handling the request. Can be enabled with -Dconcert.bookingPipeline=true, and the number of lanes (one per core
+    // by default) set with -Dconcert.bookingPipelineLanes
+    public static final boolean BOOKING_PIPELINE = Boolean.getBoolean("concert.bookingPipeline");
+    public static final int BOOKING_PIPELINE_LANES =
+            Integer.getInteger("concert.bookingPipelineLanes", Runtime.getRuntime().availableProcessors());
+    public static final int BOOKING_PIPELINE_CAPACITY = 1024; // Bookings waiting per lane before new ones get a 503
+
+    // How long seats are held for a user before they are released again, and the tick and size of the timing wheel
+    // that releases them. The hold time can be set with -Dconcert.holdTtlSeconds=...
+    public static final long HOLD_TTL_SECONDS = Long.getLong("concert.holdTtlSeconds", 300);
+    public static final long HOLD_WHEEL_TICK_MILLIS = 100;
+    public static final int HOLD_WHEEL_BUCKETS = 1024;
+
+    // The request header a client can send with a booking so that retries of it are answered with the first result,
+    // and how many of those results are remembered and for how long. A retry arriving while the first request is still
+    // being processed waits at most IDEMPOTENCY_WAIT_SECONDS for its result before it gets a 503. The times can be set
+    // with -Dconcert.idempotencyTtlSeconds=... and -Dconcert.idempotencyWaitSeconds=...
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final int IDEMPOTENCY_CACHE_SIZE = 10000;
+    public static final long IDEMPOTENCY_TTL_SECONDS = Long.getLong("concert.idempotencyTtlSeconds", 600);
+    public static final long IDEMPOTENCY_WAIT_SECONDS = Long.getLong("concert.idempotencyWaitSeconds", 30);
+
+    // How many logged in sessions are cached in memory, and for how long before the session is looked up in the
+    // database again. The time can be set with -Dconcert.sessionTtlSeconds=...
+    public static final int SESSION_CACHE_SIZE = 10000;
+    public static final long SESSION_TTL_SECONDS = Long.getLong("concert.sessionTtlSeconds", 1800);
+
+    // How auth cookies are issued and checked: "stored" (a random cookie saved on the user, looked up through the
+    // SessionCache) or "signed" (an HMAC-signed token with the user's id, checked without the database). Signed tokens
+    // expire after SESSION_TOKEN_TTL_SECONDS, and are signed with the first of the keys in -Dconcert.tokenKeys=id:base64,...
+    // while the other keys are still accepted, so keys can be rotated. Without keys, a random key is made at startup.
+    public static final String SESSION_TOKENS = System.getProperty("concert.sessionTokens", "stored");
+    public static final long SESSION_TOKEN_TTL_SECONDS = Long.getLong("concert.sessionTokenTtlSeconds", 86400);
+    public static final String SESSION_TOKEN_KEYS = System.getProperty("concert.tokenKeys", "");
+
+    // How many sell-out subscriptions may be waiting at once before new ones get a 503, and how long a subscription
+    // waits for its notification before it is answered with a 503 for the client to subscribe again. The time can be
+    // set with -Dconcert.subscriptionTimeoutSeconds=...
+    public static final int MAX_SUBSCRIPTIONS = 10000;
+    public static final long SUBSCRIPTION_TIMEOUT_SECONDS = Long.getLong("concert.subscriptionTimeoutSeconds", 600);
+
+    // How long the NotificationDispatcher waits for more bookings of a performance before notifying its subscribers,
+    // and the number of workers resuming subscribers and how many resumes may wait for them. The window can be set
+    // with -Dconcert.notificationCoalesceMillis=...
+    public static final long NOTIFICATION_COALESCE_MILLIS = Long.getLong("concert.notificationCoalesceMillis", 10);
+    public static final int NOTIFICATION_WORKERS = Runtime.getRuntime().availableProcessors();
+    public static final int NOTIFICATION_QUEUE_CAPACITY = 1024;
+
+    // The size of the ApplicationExecutor's pool when the JVM has no virtual threads, and how many tasks may wait for
+    // it before they are run by the thread submitting them. The size can be set with -Dconcert.executorThreads=...
+    public static final int EXECUTOR_THREADS =
+            Integer.getInteger("concert.executorThreads", 4 * Runtime.getRuntime().availableProcessors());
+    public static final int EXECUTOR_QUEUE_CAPACITY = 1024;
+
+    // How long the CatalogueCache keeps the concerts and performers before reloading them in the background, or 0 to
+    // keep them until it is invalidated. Can be set with -Dconcert.catalogueTtlSeconds=...
+    public static final long CATALOGUE_TTL_SECONDS = Long.getLong("concert.catalogueTtlSeconds", 0);
+
+    // How many concerts or performers a page of a paged listing has when no limit is given, and at most.
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
 }
@@ -0,0 +1,69 @@
+package se325.assignment01.concert.service.util;
+
+import se325.assignment01.concert.service.domain.Seat;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Wraps another seat locking strategy, making the claims of chosen seats fail, so that the integration tests can check
+ * how bookings recover from failures that can't be caused through the web service otherwise. Faults are queued per
+ * seat label, and each claim of a seat with faults queued takes the next one. Only used when
+ * {@link Config#FAULT_INJECTION} is enabled.
+ */
+public class FaultInjectingSeatLocking implements SeatLockingStrategy {
+
+    /**
+     * How a claim fails.
+     */
+    public enum Fault {
+        TAKEN, //The seat is found to be booked already, as if the seat map and database disagreed
+        ERROR  //The database fails in a way that is not worth retrying
+    }
+
+    //The faults still to happen (Key = seat label, Value = faults in the order they happen)
+    private static final Map<String, Queue<Fault>> faults = new ConcurrentHashMap<>();
+
+    private final SeatLockingStrategy strategy;
+
+    public FaultInjectingSeatLocking(SeatLockingStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * Queues faults for the next claims of a seat, on any date.
+     *
+     * @param label  the seat
+     * @param faults how each of the next claims of the seat fails
+     */
+    public static void inject(String label, List<Fault> faults) {
+        FaultInjectingSeatLocking.faults.computeIfAbsent(label, key -> new ConcurrentLinkedQueue<>()).addAll(faults);
+    }
+
+    /**
+     * Drops all faults that have not happened yet.
+     */
+    public static void clear() {
+        faults.clear();
+    }
+
+    @Override
+    public List<Seat> claim(EntityManager em, LocalDateTime date, List<String> labels) {
+        for (String label : labels) {
+            Queue<Fault> queue = faults.get(label);
+            Fault fault = (queue == null) ? null : queue.poll();
+            if (fault == Fault.TAKEN) {
+                return null;
+            } else if (fault == Fault.ERROR) {
+                throw new PersistenceException("Injected failure claiming seat " + label);
+            }
+        }
+        return strategy.claim(em, date, labels);
+    }
+}
@@ -0,0 +1,176 @@
+package se325.assignment01.concert.service.util;
+
+import javax.ws.rs.core.Response;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Singleton class that remembers the result of each request sent with an idempotency key, so that a client retrying
+ * the request (e.g. after a timeout) gets the same result again instead of making the booking twice. A retry that
+ * arrives while the first request is still being processed waits for its result.
+ * <p>
+ * At most {@link Config#IDEMPOTENCY_CACHE_SIZE} results are kept, each for {@link Config#IDEMPOTENCY_TTL_SECONDS}.
+ * Entries are kept in the order they were added, so the expired and oldest ones are always at the front to evict.
+ * Retries waiting for a request whose entry is dropped before the request is done are answered with a 503, so that
+ * they never wait for a result that won't come.
+ */
+public class IdempotencyCache {
+
+    private static final IdempotencyCache _instance =
+            new IdempotencyCache(Config.IDEMPOTENCY_CACHE_SIZE, Config.IDEMPOTENCY_TTL_SECONDS);
+
+    private static final int UNPROCESSABLE_ENTITY = 422;
+
+    /**
+     * The remembered result of a request: its status, the URI of what it created, if anything, and its entity, e.g.
+     * the outcome of each booking of a batch.
+     */
+    public static final class Result {
+        private final int status;
+        private final URI location;
+        private final Object entity;
+
+        private Result(int status, URI location, Object entity) {
+            this.status = status;
+            this.location = location;
+            this.entity = entity;
+        }
+
+        /**
+         * Builds a new response to send the result with.
+         */
+        public Response toResponse() {
+            return Response.status(status).location(location).entity(entity).build();
+        }
+    }
+
+    private static final class Entry {
+        private final String fingerprint;
+        private final CompletableFuture<Result> result = new CompletableFuture<>();
+        private final long expiresAtNanos;
+
+        private Entry(String fingerprint, long expiresAtNanos) {
+            this.fingerprint = fingerprint;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    //The requests seen, oldest first (Key = user and idempotency key, Value = request and its result)
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    protected IdempotencyCache(int maxEntries, long ttlSeconds) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    public static IdempotencyCache instance() {
+        return _instance;
+    }
+
+    /**
+     * Starts a request with the given key. If the key has not been seen, the caller must process the request and then
+     * pass its response to {@link #complete(String, Response)}.
+     *
+     * @param key         the idempotency key, which should include the user so that keys of users can't clash
+     * @param fingerprint what the request asks for, to tell a retry from a different request reusing the key
+     * @return null if the key is new, otherwise the result of the first request with the key, which is completed once
+     * that request is done. If the key was used for a different request, the result is a 422 response
+     */
+    public CompletableFuture<Result> begin(String key, String fingerprint) {
+        List<Entry> evicted = new ArrayList<>();
+        CompletableFuture<Result> previous;
+        synchronized (this) {
+            long now = System.nanoTime();
+            evict(now, evicted);
+
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                entries.put(key, new Entry(fingerprint, now + ttlNanos));
+                previous = null;
+            } else if (!entry.fingerprint.equals(fingerprint)) {
+                previous = CompletableFuture.completedFuture(new Result(UNPROCESSABLE_ENTITY, null, null));
+            } else {
+                previous = entry.result;
+            }
+        }
+        abandon(evicted);
+        return previous;
+    }
+
+    /**
+     * Records the response of the request started with {@link #begin(String, String)}, and hands it to any retries
+     * waiting for it. Responses that may turn out differently next time, e.g. 503 or 500, are not remembered, so that
+     * the client's next retry is processed again.
+     *
+     * @param key      the idempotency key
+     * @param response the response of the request
+     */
+    public void complete(String key, Response response) {
+        Entry entry;
+        boolean remember = isFinal(response.getStatus());
+        synchronized (this) {
+            entry = remember ? entries.get(key) : entries.remove(key);
+        }
+        if (entry != null) {
+            entry.result.complete(new Result(response.getStatus(), response.getLocation(), response.getEntity()));
+        }
+    }
+
+    /**
+     * Forgets all results. Should be called when the bookings in the database are deleted.
+     */
+    public void clear() {
+        List<Entry> cleared;
+        synchronized (this) {
+            cleared = new ArrayList<>(entries.values());
+            entries.clear();
+        }
+        abandon(cleared);
+    }
+
+    /**
+     * Returns true if the status is an outcome of the request itself, rather than of the state of the server or of the
+     * client's login.
+     */
+    private static boolean isFinal(int status) {
+        return status < Response.Status.INTERNAL_SERVER_ERROR.getStatusCode()
+                && status != Response.Status.TOO_MANY_REQUESTS.getStatusCode()
+                && status != Response.Status.UNAUTHORIZED.getStatusCode();
+    }
+
+    /**
+     * Drops the expired entries, and the oldest entries while there are too many.
+     *
+     * @param evicted to add the dropped entries to
+     */
+    private void evict(long now, List<Entry> evicted) {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+            if (entries.size() < maxEntries && eldest.expiresAtNanos - now > 0) {
+                return;
+            }
+            iterator.remove();
+            evicted.add(eldest);
+        }
+    }
+
+    /**
+     * Answers the retries waiting for dropped entries whose requests are not done yet with a 503. Called without the
+     * lock held, as the retries are resumed on this thread.
+     */
+    private static void abandon(Collection<Entry> dropped) {
+        for (Entry entry : dropped) {
+            entry.result.complete(new Result(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), null, null));
+        }
+    }
+}
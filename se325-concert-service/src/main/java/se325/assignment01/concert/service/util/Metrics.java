@@ -0,0 +1,48 @@
+package se325.assignment01.concert.service.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Singleton class that keeps the gauges of the service, e.g. how many subscriptions are waiting. A gauge is read
+ * whenever the metrics are requested, so registering one costs nothing on the paths being measured.
+ */
+public class Metrics {
+
+    private static final Metrics _instance = new Metrics();
+
+    //The gauges (Key = metric name, Value = reads the current value)
+    private final Map<String, Supplier<Number>> gauges = new ConcurrentHashMap<>();
+
+    protected Metrics() {
+    }
+
+    public static Metrics instance() {
+        return _instance;
+    }
+
+    /**
+     * Registers a gauge, replacing any gauge with the same name.
+     *
+     * @param name  the metric name e.g. "subscriptions.live"
+     * @param gauge reads the current value
+     */
+    public void gauge(String name, Supplier<Number> gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * Reads all gauges.
+     *
+     * @return the current value of each metric, sorted by name
+     */
+    public Map<String, Number> snapshot() {
+        Map<String, Number> values = new TreeMap<>();
+        for (Map.Entry<String, Supplier<Number>> gauge : gauges.entrySet()) {
+            values.put(gauge.getKey(), gauge.getValue().get());
+        }
+        return values;
+    }
+}
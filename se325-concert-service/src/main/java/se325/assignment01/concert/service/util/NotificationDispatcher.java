@@ -0,0 +1,138 @@
+package se325.assignment01.concert.service.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se325.assignment01.concert.common.dto.ConcertInfoNotificationDTO;
+
+import javax.ws.rs.core.Response;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Singleton class that notifies the subscribers of a performance after it has been booked, so that a booking doesn't
+ * wait for the subscribers' responses to be written. Bookings publish the performance they booked, and a dispatcher
+ * thread picks the published performances up after a short window, so that several bookings of the same performance
+ * within the window are coalesced into a single look at its seat map. The subscribers whose threshold has been reached
+ * are then resumed on a bounded pool of workers; if the workers fall behind, the dispatcher thread resumes subscribers
+ * itself, which slows down notifications but never bookings.
+ */
+public class NotificationDispatcher {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(NotificationDispatcher.class);
+
+    private static NotificationDispatcher _instance = null;
+
+    private final long coalesceMillis;
+    //The performances published since they were last looked at, each queued once however often it was published
+    private final Set<Performance> pending = ConcurrentHashMap.newKeySet();
+    private final BlockingQueue<Performance> queue = new LinkedBlockingQueue<>();
+    private final ThreadPoolExecutor workers;
+    private final Thread dispatcher;
+
+    protected NotificationDispatcher(long coalesceMillis, int numWorkers, int workerQueueCapacity) {
+        this.coalesceMillis = coalesceMillis;
+
+        AtomicInteger workerCount = new AtomicInteger();
+        workers = new ThreadPoolExecutor(numWorkers, numWorkers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workerQueueCapacity), task -> {
+            Thread worker = new Thread(task, "notification-worker-" + workerCount.getAndIncrement());
+            worker.setDaemon(true);
+            return worker;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+
+        dispatcher = new Thread(this::run, "notification-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+
+        Metrics.instance().gauge("notifications.pending", pending::size);
+        Metrics.instance().gauge("notifications.queued", () -> workers.getQueue().size());
+    }
+
+    public static synchronized NotificationDispatcher instance() {
+        if (_instance == null) {
+            _instance = new NotificationDispatcher(Config.NOTIFICATION_COALESCE_MILLIS, Config.NOTIFICATION_WORKERS,
+                    Config.NOTIFICATION_QUEUE_CAPACITY);
+        }
+        return _instance;
+    }
+
+    /**
+     * Stops the dispatcher and its workers, if they were started. Subscribers not yet notified stay subscribed.
+     */
+    public static synchronized void shutdown() {
+        if (_instance == null) {
+            return;
+        }
+
+        _instance.dispatcher.interrupt();
+        _instance.workers.shutdownNow();
+        _instance = null;
+    }
+
+    /**
+     * Publishes that seats of a performance have been booked, so its subscribers are notified if their threshold has
+     * been reached. Returns straight away.
+     *
+     * @param concertId the concert booked
+     * @param date      the date booked
+     */
+    public void publish(long concertId, LocalDateTime date) {
+        Performance performance = new Performance(concertId, date);
+        if (pending.add(performance)) { //If it is already pending, the booking will be seen when it is looked at
+            queue.add(performance);
+        }
+    }
+
+    private void run() {
+        List<Performance> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+                Thread.sleep(coalesceMillis); //Let more bookings of the performance arrive before looking at it
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch);
+
+            for (Performance performance : batch) {
+                //Removed before the seat map is read, so that any later booking publishes the performance again
+                pending.remove(performance);
+                try {
+                    notifySubscribers(performance);
+                } catch (RuntimeException e) { //Keep the dispatcher running for the other performances
+                    LOGGER.error("run(): Notifying subscribers failed", e);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Resumes the subscribers of the performance whose threshold the current percentage of seats booked has reached.
+     */
+    private void notifySubscribers(Performance performance) {
+        SeatMap seatMap = SeatInventory.instance().getSeatMap(performance.getDate());
+        if (seatMap == null) {
+            return;
+        }
+
+        int numSeatsAvailable = seatMap.getNumUnbooked();
+        int percentageOfSeatsBooked = 100 - (numSeatsAvailable * 100 / TheatreLayout.NUM_SEATS_IN_THEATRE);
+        List<Subscription> reached = SubscriptionRegistry.instance()
+                .takeReached(performance.getConcertId(), performance.getDate(), percentageOfSeatsBooked);
+
+        ConcertInfoNotificationDTO notification = new ConcertInfoNotificationDTO(numSeatsAvailable);
+        for (Subscription subscription : reached) {
+            workers.execute(() -> subscription.getResponse().resume(Response.ok(notification).build()));
+        }
+    }
+}
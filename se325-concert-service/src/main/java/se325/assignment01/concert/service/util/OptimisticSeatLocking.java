@@ -0,0 +1,48 @@
+package se325.assignment01.concert.service.util;
+
+import se325.assignment01.concert.service.domain.Seat;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Claims seats by loading them, checking that none are booked and marking them as booked. A concurrent booking of the
+ * same seats is only detected through the seats' @Version when the transaction commits, which then fails with an
+ * {@link javax.persistence.OptimisticLockException}.
+ */
+public class OptimisticSeatLocking implements SeatLockingStrategy {
+
+    @Override
+    public List<Seat> claim(EntityManager em, LocalDateTime date, List<String> labels) {
+        //Retrieve all the seats that are not booked on the date of the user made booking
+        List<Seat> listOfSeatsAvailable = em.createQuery(
+                "select s from Seat s where s.label in :seats and s.isBooked = :status and s.date = :date", Seat.class)
+                .setParameter("seats", labels).setParameter("status", false)
+                .setParameter("date", date)
+                .setLockMode(LockModeType.OPTIMISTIC) //Set lock mode to prevent concurrency issues
+                .getResultList();
+
+        return markBooked(listOfSeatsAvailable, labels.size());
+    }
+
+    /**
+     * Marks the seats as booked if all the requested seats are among them.
+     *
+     * @param seatsAvailable the requested seats which are not booked
+     * @param numRequested   the number of seats requested
+     * @return the seats, or null if some of the requested seats are booked
+     */
+    static List<Seat> markBooked(List<Seat> seatsAvailable, int numRequested) {
+        //If there are seats that are booked among the seats the user is booking the claim fails
+        if (seatsAvailable.size() != numRequested) {
+            return null;
+        }
+        //At this point all the seats in the user booking can be booked and so set all the seats to booked
+        for (Seat seatToBook : seatsAvailable) {
+            seatToBook.setBooked(true);
+        }
+        return seatsAvailable;
+    }
+}
@@ -0,0 +1,47 @@
+package se325.assignment01.concert.service.util;
+
+import javax.ws.rs.core.Link;
+import javax.ws.rs.core.UriInfo;
+import java.util.List;
+
+/**
+ * A page of a listing, along with where the next page starts.
+ *
+ * @param <T> the type of the items
+ */
+public class Page<T> {
+
+    private final List<T> items;
+    private final Long nextAfter;
+
+    public Page(List<T> items, Long nextAfter) {
+        this.items = items;
+        this.nextAfter = nextAfter;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Returns the id to pass as the "after" parameter to get the next page, or null if this is the last page.
+     */
+    public Long getNextAfter() {
+        return nextAfter;
+    }
+
+    /**
+     * Returns the links to send with this page: a link to the next page with a rel of "next", made from the request's
+     * URI with the "after" parameter replaced, or none if this is the last page.
+     *
+     * @param uriInfo of the request for this page
+     * @return the links, for the response's Link header
+     */
+    public Link[] links(UriInfo uriInfo) {
+        if (nextAfter == null) {
+            return new Link[0];
+        }
+        return new Link[]{Link.fromUriBuilder(uriInfo.getRequestUriBuilder().replaceQueryParam("after", nextAfter))
+                .rel("next").build()};
+    }
+}
@@ -0,0 +1,40 @@
+package se325.assignment01.concert.service.util;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * A concert on a particular date, used as a key for what is kept per performance.
+ */
+public final class Performance {
+
+    private final long concertId;
+    private final LocalDateTime date;
+
+    public Performance(long concertId, LocalDateTime date) {
+        this.concertId = concertId;
+        this.date = date;
+    }
+
+    public long getConcertId() {
+        return concertId;
+    }
+
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Performance)) {
+            return false;
+        }
+        Performance rhs = (Performance) obj;
+        return concertId == rhs.concertId && date.equals(rhs.date);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(concertId, date);
+    }
+}
@@ -0,0 +1,74 @@
+package se325.assignment01.concert.service.util;
+
+import se325.assignment01.concert.common.dto.ConcertDTO;
+import se325.assignment01.concert.common.dto.ConcertSummaryDTO;
+import se325.assignment01.concert.common.dto.PerformanceDTO;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * An index of every performance of every concert ordered by date, so the performances between two dates are found
+ * without going through each concert's dates. The seats left for each performance are read from the
+ * {@link SeatInventory} when the performances are asked for, so they are always current even though the index itself
+ * is only built when the catalogue is loaded.
+ * <p>
+ * The index is never changed once built, so it can be read by any number of threads at once.
+ */
+public final class PerformanceIndex {
+
+    //The concerts on each date, in case two are on at the same time (Key = date, Value = concerts on that date)
+    private final NavigableMap<LocalDateTime, List<ConcertSummaryDTO>> performances = new TreeMap<>();
+
+    /**
+     * Indexes the dates of the concerts.
+     *
+     * @param concerts  the concerts, with their dates
+     * @param summaries the summary of each concert
+     */
+    PerformanceIndex(List<ConcertDTO> concerts, List<ConcertSummaryDTO> summaries) {
+        for (int i = 0; i < concerts.size(); i++) {
+            for (LocalDateTime date : concerts.get(i).getDates()) {
+                performances.computeIfAbsent(date, key -> new ArrayList<>(1)).add(summaries.get(i));
+            }
+        }
+    }
+
+    /**
+     * Returns the performances between the two dates, earliest first.
+     *
+     * @param from  the earliest date, inclusive, or null for the first performance
+     * @param to    the latest date, exclusive, or null for the last performance
+     * @param limit the most performances to return
+     * @return the performances, with the seats left for each
+     */
+    public List<PerformanceDTO> between(LocalDateTime from, LocalDateTime to, int limit) {
+        NavigableMap<LocalDateTime, List<ConcertSummaryDTO>> range = performances;
+        if (from != null) {
+            range = range.tailMap(from, true);
+        }
+        if (to != null) {
+            range = range.headMap(to, false);
+        }
+
+        List<PerformanceDTO> results = new ArrayList<>(Math.min(limit, range.size()));
+        for (Map.Entry<LocalDateTime, List<ConcertSummaryDTO>> performance : range.entrySet()) {
+            SeatMap seatMap = SeatInventory.instance().getSeatMap(performance.getKey());
+            int numBooked = seatMap == null ? 0 : seatMap.getNumBooked();
+            int numFree = seatMap == null ? TheatreLayout.NUM_SEATS_IN_THEATRE
+                    : seatMap.getNumUnbooked() - seatMap.getNumHeld();
+            for (ConcertSummaryDTO concert : performance.getValue()) {
+                if (results.size() == limit) {
+                    return results;
+                }
+                results.add(new PerformanceDTO(concert.getId(), concert.getTitle(), concert.getImageName(),
+                        performance.getKey(), numFree, numBooked));
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,31 @@
+package se325.assignment01.concert.service.util;
+
+import se325.assignment01.concert.service.domain.Seat;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Claims seats by locking their rows (SELECT ... FOR UPDATE) before checking and booking them, so a concurrent booking
+ * of the same seats waits for this transaction instead of failing on commit. The rows are always locked in seat label
+ * order, so two bookings with overlapping seats can't each hold a lock the other is waiting for.
+ */
+public class PessimisticSeatLocking implements SeatLockingStrategy {
+
+    @Override
+    public List<Seat> claim(EntityManager em, LocalDateTime date, List<String> labels) {
+        List<Seat> lockedSeats = em.createQuery(
+                "select s from Seat s where s.date = :date and s.label in :labels order by s.label", Seat.class)
+                .setParameter("date", date).setParameter("labels", labels)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+
+        //Now that no one else can change these seats, check that none of them are booked yet
+        if (lockedSeats.stream().anyMatch(Seat::isBooked)) {
+            return null;
+        }
+        return OptimisticSeatLocking.markBooked(lockedSeats, labels.size());
+    }
+}
@@ -0,0 +1,120 @@
+package se325.assignment01.concert.service.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A response body rendered to JSON once, both as is and gzipped, so that it can be sent any number of times without
+ * serialising it again. Each form has a strong ETag made from a hash of the JSON, so a client that already has the
+ * body is answered with a 304.
+ */
+public final class RenderedJson {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final byte[] plain;
+    private final byte[] gzipped;
+    private final EntityTag plainTag;
+    private final EntityTag gzippedTag;
+
+    private RenderedJson(byte[] plain) {
+        this.plain = plain;
+        this.gzipped = gzip(plain);
+        String hash = hash(plain);
+        this.plainTag = new EntityTag(hash);
+        this.gzippedTag = new EntityTag(hash + "-gzip");
+    }
+
+    /**
+     * Renders the value to JSON, in the same way as the JSON provider would.
+     *
+     * @param value the value, e.g. a DTO or a list of DTOs
+     * @return the rendered JSON
+     */
+    public static RenderedJson of(Object value) {
+        try {
+            return new RenderedJson(MAPPER.writeValueAsBytes(value));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Can't render " + value.getClass().getSimpleName() + " as JSON", e);
+        }
+    }
+
+    /**
+     * Builds the response for a request: a 304 if the client already has the JSON, otherwise the JSON itself, gzipped
+     * if the client accepts that.
+     *
+     * @param request with the client's If-None-Match header, if any
+     * @param headers with the client's Accept-Encoding header, if any
+     * @return the response
+     */
+    public Response toResponse(Request request, HttpHeaders headers) {
+        boolean gzip = acceptsGzip(headers.getHeaderString(HttpHeaders.ACCEPT_ENCODING));
+        EntityTag tag = gzip ? gzippedTag : plainTag;
+
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (notModified != null) {
+            return notModified.tag(tag).header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING).build();
+        }
+
+        Response.ResponseBuilder response = Response.ok(gzip ? gzipped : plain, MediaType.APPLICATION_JSON_TYPE)
+                .tag(tag).header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.build();
+    }
+
+    /**
+     * Returns true if the Accept-Encoding header lists gzip, without a q of 0.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] params = coding.trim().split(";");
+            if (params[0].trim().equalsIgnoreCase("gzip")) {
+                for (int i = 1; i < params.length; i++) {
+                    if (params[i].replace(" ", "").matches("q=0(\\.0*)?")) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 32);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException e) { //Can't happen when writing to memory
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String hash(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16));
+        } catch (NoSuchAlgorithmException e) { //Every JVM has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
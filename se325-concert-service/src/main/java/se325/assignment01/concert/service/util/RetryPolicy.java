@@ -0,0 +1,65 @@
+package se325.assignment01.concert.service.util;
+
+import javax.persistence.LockTimeoutException;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceException;
+import javax.persistence.PessimisticLockException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * A bounded retry policy for database work which can fail because of a concurrent update, e.g. an
+ * {@link OptimisticLockException} on commit. Each retry waits a little longer than the one before, with some random
+ * jitter so that the threads which collided do not collide again.
+ */
+public class RetryPolicy {
+
+    private final int maxAttempts;
+    private final long backoffMillis;
+
+    public RetryPolicy(int maxAttempts, long backoffMillis) {
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+    }
+
+    /**
+     * Runs the action, running it again if it fails because of a concurrent update.
+     *
+     * @param action the unit of work, which must begin and end its own transaction
+     * @return the result of the first successful attempt
+     * @throws PersistenceException the failure of the last attempt, if no attempt succeeded
+     */
+    public <T> T execute(Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (PersistenceException e) {
+                if (attempt >= maxAttempts || !isRetryable(e)) {
+                    throw e;
+                }
+                backOff(attempt);
+            }
+        }
+    }
+
+    /**
+     * Returns true if the exception (or one of its causes) was caused by a concurrent update or lock conflict.
+     */
+    public static boolean isRetryable(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockException || cause instanceof PessimisticLockException
+                    || cause instanceof LockTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void backOff(int attempt) {
+        try {
+            Thread.sleep(backoffMillis * attempt + ThreadLocalRandom.current().nextLong(backoffMillis + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package se325.assignment01.concert.service.util;
+
+import se325.assignment01.concert.common.dto.ConcertDTO;
+import se325.assignment01.concert.common.dto.ConcertSummaryDTO;
+import se325.assignment01.concert.common.dto.PerformerDTO;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * An inverted index over the words of the concerts' titles and blurbs, and their performers' names and genres, used to
+ * search the concerts. The words are kept sorted, so each search word matches every indexed word it is a prefix of,
+ * e.g. "mend" matches "mendes". A concert matches a search if it matches every search word, and the concerts are
+ * ranked by where they matched: a title counts for more than a performer's name or genre, which count for more than
+ * the blurb, and a whole word counts double.
+ * <p>
+ * The index is built from the catalogue and never changed, so it can be searched by any number of threads at once.
+ * The {@link CatalogueCache} builds a new one whenever it reloads the catalogue.
+ */
+public final class SearchIndex {
+
+    //How much a match in each field counts towards a concert's rank
+    private static final int TITLE_WEIGHT = 4;
+    private static final int PERFORMER_WEIGHT = 3;
+    private static final int GENRE_WEIGHT = 2;
+    private static final int BLURB_WEIGHT = 1;
+
+    //The concerts each word is in, with the weight of the best field it is in (Key = word, Value = concert id to weight)
+    private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    private final Map<Long, ConcertSummaryDTO> summariesById = new HashMap<>();
+
+    /**
+     * Indexes the concerts.
+     *
+     * @param concerts  the concerts, with their performers
+     * @param summaries the summary of each concert, which are returned by searches
+     */
+    SearchIndex(List<ConcertDTO> concerts, List<ConcertSummaryDTO> summaries) {
+        for (ConcertSummaryDTO summary : summaries) {
+            summariesById.put(summary.getId(), summary);
+        }
+        for (ConcertDTO concert : concerts) {
+            add(concert.getId(), concert.getTitle(), TITLE_WEIGHT);
+            add(concert.getId(), concert.getBlurb(), BLURB_WEIGHT);
+            for (PerformerDTO performer : concert.getPerformers()) {
+                add(concert.getId(), performer.getName(), PERFORMER_WEIGHT);
+                if (performer.getGenre() != null) {
+                    //Both as one word and split into its words, so "blues" finds RhythmAndBlues
+                    String genre = performer.getGenre().name();
+                    add(concert.getId(), genre, GENRE_WEIGHT);
+                    add(concert.getId(), genre.replaceAll("(?<=[a-z])(?=[A-Z])", " "), GENRE_WEIGHT);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the summaries of the concerts matching every word of the query, best match first and then by id.
+     *
+     * @param query the words to search for, which may be the start of words
+     * @param limit the most concerts to return
+     * @return the matching concerts, or none if the query has no words
+     */
+    public List<ConcertSummaryDTO> search(String query, int limit) {
+        Set<String> words = words(query);
+        if (words.isEmpty()) {
+            return List.of();
+        }
+
+        //Start with the concerts matching the first word, and narrow them down with each word after it
+        Map<Long, Integer> scores = null;
+        for (String word : words) {
+            Map<Long, Integer> wordScores = score(word);
+            if (scores == null) {
+                scores = wordScores;
+            } else {
+                Map<Long, Integer> narrowed = new HashMap<>();
+                for (Map.Entry<Long, Integer> entry : scores.entrySet()) {
+                    Integer wordScore = wordScores.get(entry.getKey());
+                    if (wordScore != null) {
+                        narrowed.put(entry.getKey(), entry.getValue() + wordScore);
+                    }
+                }
+                scores = narrowed;
+            }
+            if (scores.isEmpty()) {
+                return List.of();
+            }
+        }
+
+        List<Map.Entry<Long, Integer>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Map.Entry.<Long, Integer>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey(Comparator.naturalOrder())));
+        List<ConcertSummaryDTO> results = new ArrayList<>(Math.min(limit, ranked.size()));
+        for (int i = 0; i < ranked.size() && i < limit; i++) {
+            results.add(summariesById.get(ranked.get(i).getKey()));
+        }
+        return results;
+    }
+
+    /**
+     * Returns the best score of each concert with a word starting with the search word.
+     */
+    private Map<Long, Integer> score(String word) {
+        Map<Long, Integer> scores = new HashMap<>();
+        //Every word starting with the search word sorts between it and the search word followed by the highest char
+        for (Map.Entry<String, Map<Long, Integer>> posting :
+                postings.subMap(word, true, word + Character.MAX_VALUE, false).entrySet()) {
+            int multiplier = posting.getKey().equals(word) ? 2 : 1;
+            for (Map.Entry<Long, Integer> concert : posting.getValue().entrySet()) {
+                scores.merge(concert.getKey(), concert.getValue() * multiplier, Math::max);
+            }
+        }
+        return scores;
+    }
+
+    private void add(Long concertId, String text, int weight) {
+        for (String word : words(text)) {
+            postings.computeIfAbsent(word, key -> new HashMap<>()).merge(concertId, weight, Math::max);
+        }
+    }
+
+    /**
+     * Splits the text into lower case words without accents, so that accented letters are found without the accents.
+     */
+    static Set<String> words(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        if (text == null) {
+            return words;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase(Locale.ROOT);
+        for (String word : normalized.split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+}
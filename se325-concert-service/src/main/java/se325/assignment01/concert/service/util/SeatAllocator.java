@@ -0,0 +1,66 @@
+package se325.assignment01.concert.service.util;
+
+/**
+ * Utility class that chooses the best block of adjacent free seats in a {@link SeatMap}. The best block is in the
+ * front-most row that has one, and as close to the centre of that row as possible.
+ * <p>
+ * Each row is searched with a few bit operations on its occupancy mask: shifting the free seats right by one and
+ * ANDing them back in leaves a bit set for every free seat whose neighbour is free too, so after doing that once per
+ * extra seat, the bits left set are the first seats of every free block of the requested size.
+ */
+public class SeatAllocator {
+
+    /**
+     * Finds the best block of adjacent seats which are neither booked nor held.
+     *
+     * @param seatMap  the seats of the concert date
+     * @param numSeats the number of seats wanted
+     * @param band     the price band the seats must be in, or null for any band
+     * @return a seat mask of the block, or null if no row has enough adjacent free seats
+     */
+    public static long[] findBest(SeatMap seatMap, int numSeats, TheatreLayout.PriceBand band) {
+        if (numSeats < 1 || numSeats > TheatreLayout.NUM_SEATS_PER_ROW) {
+            return null;
+        }
+
+        for (int row = 0; row < TheatreLayout.NUM_ROWS; row++) {
+            if (band != null && TheatreLayout.priceBandOf(row) != band) {
+                continue;
+            }
+
+            int start = bestStartOf(~seatMap.getOccupiedRowMask(row) & SeatMap.ROW_MASK, numSeats);
+            if (start >= 0) {
+                return SeatMap.maskOf(row, ((1 << numSeats) - 1) << start);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the zero-based first seat of the free block of the given size closest to the centre of the row, or -1 if
+     * there is no such block.
+     *
+     * @param free     the free seats of the row, with bit 0 being seat 1
+     * @param numSeats the size of the block
+     */
+    static int bestStartOf(int free, int numSeats) {
+        int starts = free;
+        for (int i = 1; i < numSeats && starts != 0; i++) {
+            starts &= free >>> i;
+        }
+
+        int bestStart = -1;
+        int bestDistance = Integer.MAX_VALUE;
+        while (starts != 0) {
+            int start = Integer.numberOfTrailingZeros(starts);
+            //Twice the distance between the centres of the block and the row, to keep it in whole seats
+            int distance = Math.abs(2 * start + numSeats - TheatreLayout.NUM_SEATS_PER_ROW);
+            if (distance < bestDistance) {
+                bestStart = start;
+                bestDistance = distance;
+            }
+            starts &= starts - 1; //Clear the lowest set bit
+        }
+        return bestStart;
+    }
+}
@@ -0,0 +1,57 @@
+package se325.assignment01.concert.service.util;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * The SeatHold class contains information about seats held for a user while they complete their booking
+ */
+public class SeatHold {
+
+    private final long id; //Generated ID to uniquely identify the hold
+    private final long userId; //The user the seats are held for
+    private final long concertId;
+    private final LocalDateTime date;
+    private final List<String> seatLabels;
+    private final LocalDateTime expiresAt; //When the seats are released unless booked
+    private final TimingWheel.Timeout expiry; //The scheduled release of the seats, cancelled if the hold ends earlier
+
+    public SeatHold(long id, long userId, long concertId, LocalDateTime date, List<String> seatLabels,
+                    LocalDateTime expiresAt, TimingWheel.Timeout expiry) {
+        this.id = id;
+        this.userId = userId;
+        this.concertId = concertId;
+        this.date = date;
+        this.seatLabels = seatLabels;
+        this.expiresAt = expiresAt;
+        this.expiry = expiry;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public long getConcertId() {
+        return concertId;
+    }
+
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    public List<String> getSeatLabels() {
+        return seatLabels;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public TimingWheel.Timeout getExpiry() {
+        return expiry;
+    }
+}
@@ -0,0 +1,119 @@
+package se325.assignment01.concert.service.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Singleton class that keeps the table of current {@link SeatHold}s. The held seats are marked in the
+ * {@link SeatInventory}, so nobody else can book them, and each hold is released automatically after
+ * {@link Config#HOLD_TTL_SECONDS} by a {@link TimingWheel} unless it is booked or released first. Holds are only kept
+ * in memory.
+ */
+public class SeatHolds {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(SeatHolds.class);
+
+    private static final SeatHolds _instance = new SeatHolds();
+
+    //A map to hold the current holds (Key = hold id, Value = hold)
+    private final Map<Long, SeatHold> holds = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final TimingWheel expiryWheel =
+            new TimingWheel("seat-hold-expiry", Config.HOLD_WHEEL_TICK_MILLIS, Config.HOLD_WHEEL_BUCKETS);
+
+    protected SeatHolds() {
+    }
+
+    public static SeatHolds instance() {
+        return _instance;
+    }
+
+    /**
+     * Holds all of the given seats for the user, or none of them if any is unavailable.
+     *
+     * @param userId    the user to hold the seats for
+     * @param concertId the concert
+     * @param date      the concert date
+     * @param labels    the seats to hold
+     * @return the new hold, or null if any of the seats does not exist or is already booked or held
+     */
+    public SeatHold hold(long userId, long concertId, LocalDateTime date, List<String> labels) {
+        if (!SeatInventory.instance().hold(date, labels)) {
+            return null;
+        }
+
+        long id = nextId.getAndIncrement();
+        TimingWheel.Timeout expiry = expiryWheel.schedule(() -> expire(id), Config.HOLD_TTL_SECONDS, TimeUnit.SECONDS);
+        SeatHold hold = new SeatHold(id, userId, concertId, date, new ArrayList<>(labels),
+                LocalDateTime.now().plusSeconds(Config.HOLD_TTL_SECONDS), expiry);
+        holds.put(id, hold);
+        return hold;
+    }
+
+    /**
+     * Returns the hold with the given id, or null if there is no such hold or it has ended.
+     */
+    public SeatHold get(long id) {
+        return holds.get(id);
+    }
+
+    /**
+     * Ends the hold so that its seats can be booked. The seats stay held in the {@link SeatInventory}, for the caller
+     * to book with {@link SeatInventory#claimHeld}.
+     *
+     * @param hold the hold
+     * @return false if the hold had already ended, e.g. because it expired
+     */
+    public boolean take(SeatHold hold) {
+        if (!holds.remove(hold.getId(), hold)) {
+            return false;
+        }
+        hold.getExpiry().cancel();
+        return true;
+    }
+
+    /**
+     * Ends the hold and releases its seats.
+     *
+     * @param hold the hold
+     * @return false if the hold had already ended
+     */
+    public boolean release(SeatHold hold) {
+        if (!take(hold)) {
+            return false;
+        }
+        SeatInventory.instance().releaseHold(hold.getDate(), hold.getSeatLabels());
+        return true;
+    }
+
+    /**
+     * Ends all holds without releasing their seats. Should be called when the {@link SeatInventory} is rebuilt.
+     */
+    public void clear() {
+        for (SeatHold hold : holds.values()) {
+            take(hold);
+        }
+    }
+
+    /**
+     * Stops releasing holds when they expire. Should be called when the application is undeployed.
+     */
+    public void shutdown() {
+        expiryWheel.stop();
+    }
+
+    private void expire(long id) {
+        SeatHold hold = holds.get(id);
+        if (hold != null && release(hold)) {
+            LOGGER.debug("expire(): Released hold " + id + " on " + hold.getSeatLabels());
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package se325.assignment01.concert.service.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+
+/**
+ * Singleton class that keeps an in-memory {@link SeatMap} for every concert date, so that seat availability can be
+ * checked and seats claimed without querying the Seat table. Seats are claimed with a compare-and-set on the date's
+ * seat map, and the caller then writes the claim through to the database in its own transaction, releasing the seats
+ * again if that transaction fails. Every change is passed on to the {@link SeatMapStreams}.
+ */
+public class SeatInventory {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(SeatInventory.class);
+
+    private static final SeatInventory _instance = new SeatInventory();
+
+    //A map to hold the current seat map of each concert date (Key = date, Value = latest seat map)
+    private final Map<LocalDateTime, AtomicReference<SeatMap>> seatMaps = new ConcurrentHashMap<>();
+
+    protected SeatInventory() {
+    }
+
+    public static SeatInventory instance() {
+        return _instance;
+    }
+
+    /**
+     * Rebuilds the inventory from the Seat table. Should be called whenever the seats in the database are (re)created.
+     *
+     * @param dates all concert dates
+     * @param em    an entity manager with an active transaction
+     */
+    public void load(Set<LocalDateTime> dates, EntityManager em) {
+        //Only the booked seats are needed, and only their date and label
+        List<Object[]> bookedSeats = em.createQuery(
+                "select s.date, s.label from Seat s where s.isBooked = true", Object[].class).getResultList();
+
+        //Gather each date's booked seats into one mask, so each seat map and its counts are made once
+        Map<LocalDateTime, long[]> bookedMasks = new HashMap<>();
+        for (LocalDateTime date : dates) {
+            bookedMasks.put(date, new long[SeatMap.NUM_WORDS]);
+        }
+        for (Object[] seat : bookedSeats) {
+            long[] bookedMask = bookedMasks.get((LocalDateTime) seat[0]);
+            long[] seatMask = SeatMap.maskOf(List.of((String) seat[1]));
+            if (bookedMask != null && seatMask != null) {
+                for (int i = 0; i < SeatMap.NUM_WORDS; i++) {
+                    bookedMask[i] |= seatMask[i];
+                }
+            }
+        }
+
+        seatMaps.keySet().retainAll(dates);
+        for (Map.Entry<LocalDateTime, long[]> bookedMask : bookedMasks.entrySet()) {
+            seatMaps.put(bookedMask.getKey(), new AtomicReference<>(SeatMap.empty().withBooked(bookedMask.getValue())));
+        }
+
+        for (LocalDateTime date : dates) {
+            SeatMapStreams.instance().changed(date);
+        }
+
+        LOGGER.debug("load(): Loaded " + dates.size() + " seat maps with " + bookedSeats.size() + " booked seats");
+    }
+
+    /**
+     * Returns the current seat map for the given date, or null if there is no concert on that date.
+     */
+    public SeatMap getSeatMap(LocalDateTime date) {
+        AtomicReference<SeatMap> seatMap = seatMaps.get(date);
+        return seatMap == null ? null : seatMap.get();
+    }
+
+    /**
+     * Atomically books all of the given seats on the given date, or none of them if any is unavailable.
+     *
+     * @param date   the concert date
+     * @param labels the seats to book
+     * @return true if the seats were claimed, false if any seat does not exist or is already booked or held
+     */
+    public boolean claim(LocalDateTime date, Collection<String> labels) {
+        return update(date, labels, SeatMap::isAvailable, SeatMap::withBooked);
+    }
+
+    /**
+     * Releases seats previously claimed with {@link #claim(LocalDateTime, Collection)}, e.g. when writing the booking
+     * to the database failed.
+     */
+    public void release(LocalDateTime date, Collection<String> labels) {
+        update(date, labels, (seatMap, mask) -> true, SeatMap::withReleased);
+    }
+
+    /**
+     * Atomically holds all of the given seats on the given date, or none of them if any is unavailable. Held seats
+     * can't be booked or held by anyone else until they are released or booked with {@link #claimHeld}.
+     *
+     * @param date   the concert date
+     * @param labels the seats to hold
+     * @return true if the seats are now held, false if any seat does not exist or is already booked or held
+     */
+    public boolean hold(LocalDateTime date, Collection<String> labels) {
+        return update(date, labels, SeatMap::isAvailable, SeatMap::withHeld);
+    }
+
+    /**
+     * Releases seats previously held with {@link #hold(LocalDateTime, Collection)}.
+     */
+    public void releaseHold(LocalDateTime date, Collection<String> labels) {
+        update(date, labels, (seatMap, mask) -> true, SeatMap::withHoldReleased);
+    }
+
+    /**
+     * Atomically books seats previously held with {@link #hold(LocalDateTime, Collection)}. Like
+     * {@link #claim(LocalDateTime, Collection)}, the booking must then be written to the database, and the seats
+     * released with {@link #release(LocalDateTime, Collection)} if that fails.
+     *
+     * @return true if the seats were claimed, false if they are not all held
+     */
+    public boolean claimHeld(LocalDateTime date, Collection<String> labels) {
+        return update(date, labels, SeatMap::isHeld, SeatMap::withHoldBooked);
+    }
+
+    /**
+     * Atomically books the best block of adjacent seats in a single row, as chosen by {@link SeatAllocator}.
+     *
+     * @param date     the concert date
+     * @param numSeats the number of seats to book
+     * @param band     the price band to book in, or null for any band
+     * @return the labels of the seats claimed, or null if there is no concert on that date or no such block is free
+     */
+    public List<String> claimBestAvailable(LocalDateTime date, int numSeats, TheatreLayout.PriceBand band) {
+        AtomicReference<SeatMap> ref = seatMaps.get(date);
+        if (ref == null) {
+            return null;
+        }
+
+        while (true) { //If another thread swaps the seat map in between, choose again from the new one
+            SeatMap current = ref.get();
+            long[] mask = SeatAllocator.findBest(current, numSeats, band);
+            if (mask == null) {
+                return null;
+            }
+            if (ref.compareAndSet(current, current.withBooked(mask))) {
+                SeatMapStreams.instance().changed(date);
+                return SeatMap.labelsOf(mask);
+            }
+        }
+    }
+
+    /**
+     * Swaps the seat map of the date for a changed one, if the change is allowed for the seats.
+     */
+    private boolean update(LocalDateTime date, Collection<String> labels,
+                           BiPredicate<SeatMap, long[]> allowed, BiFunction<SeatMap, long[], SeatMap> change) {
+        AtomicReference<SeatMap> ref = seatMaps.get(date);
+        long[] mask = SeatMap.maskOf(labels);
+        if (ref == null || mask == null) {
+            return false;
+        }
+
+        while (true) { //Retry the compare-and-set until no other thread has swapped the seat map in between
+            SeatMap current = ref.get();
+            if (!allowed.test(current, mask)) {
+                return false;
+            }
+            if (ref.compareAndSet(current, change.apply(current, mask))) {
+                SeatMapStreams.instance().changed(date);
+                return true;
+            }
+        }
+    }
+}
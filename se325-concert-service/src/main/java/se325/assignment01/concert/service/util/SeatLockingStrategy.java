@@ -0,0 +1,48 @@
+package se325.assignment01.concert.service.util;
+
+import se325.assignment01.concert.service.domain.Seat;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * A way of marking seats as booked in the Seat table as part of the caller's transaction, which decides how concurrent
+ * bookings of the same seats are kept apart. The strategy used by the web service is chosen with
+ * {@link Config#SEAT_LOCKING}.
+ */
+public interface SeatLockingStrategy {
+
+    /**
+     * Claims all of the given seats, or none of them.
+     *
+     * @param em     an entity manager with an active transaction
+     * @param date   the concert date
+     * @param labels the seats to claim
+     * @return the claimed seats, or null if not all of them could be claimed, in which case the caller must roll back
+     * its transaction
+     */
+    List<Seat> claim(EntityManager em, LocalDateTime date, List<String> labels);
+
+    /**
+     * Returns the strategy with the given name: "optimistic", "pessimistic", "skipLocked" or "conditional".
+     *
+     * @param name the name of the strategy
+     * @return the strategy
+     * @throws IllegalArgumentException if there is no such strategy
+     */
+    static SeatLockingStrategy forName(String name) {
+        switch (name) {
+            case "optimistic":
+                return new OptimisticSeatLocking();
+            case "pessimistic":
+                return new PessimisticSeatLocking();
+            case "skipLocked":
+                return new SkipLockedSeatLocking();
+            case "conditional":
+                return new ConditionalUpdateSeatLocking();
+            default:
+                throw new IllegalArgumentException("Unknown seat locking strategy: " + name);
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package se325.assignment01.concert.service.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An immutable snapshot of the seats booked and held for a single concert date. Each row of the {@link TheatreLayout}
+ * is given a 16 bit slot in an array of longs (four rows per long), and each seat in the row is one bit of that slot.
+ * Since a snapshot is never modified, it can be swapped atomically by the {@link SeatInventory} with a compare-and-set,
+ * and its version tells clients whether the seats have changed since they last fetched them.
+ * <p>
+ * Each snapshot also keeps the number of seats booked and held in each price band, worked out from the seats that
+ * changed when it was made from the one before, so the seats left can be read without counting them.
+ */
+public final class SeatMap {
+
+    public static final int BITS_PER_ROW = 16;
+    public static final int ROWS_PER_WORD = Long.SIZE / BITS_PER_ROW;
+    public static final int NUM_WORDS = (TheatreLayout.NUM_ROWS + ROWS_PER_WORD - 1) / ROWS_PER_WORD;
+    public static final int ROW_MASK = (1 << TheatreLayout.NUM_SEATS_PER_ROW) - 1;
+
+    //Every seat map made gets the next version, so a date's seat map has a new version whenever it changes
+    private static final AtomicLong VERSIONS = new AtomicLong();
+    //Identifies this run of the service, as the versions start again from 1 after a restart
+    private static final String INSTANCE_ID = Long.toString(System.currentTimeMillis(), 36)
+            + Integer.toString(ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE), 36);
+    //The index in TheatreLayout.PRICE_BANDS of each row's price band
+    private static final int[] BAND_OF_ROW = bandOfEachRow();
+
+    private final long[] booked; //One bit per booked seat
+    private final long[] held; //One bit per seat held for a user who has not booked it yet
+    private final int[] numBookedPerBand; //Indexed like TheatreLayout.PRICE_BANDS, and never modified once made
+    private final int[] numHeldPerBand;
+    private final int numBooked;
+    private final int numHeld;
+    private final long version;
+
+    private SeatMap(long[] booked, long[] held, int[] numBookedPerBand, int[] numHeldPerBand) {
+        this.booked = booked;
+        this.held = held;
+        this.numBookedPerBand = numBookedPerBand;
+        this.numHeldPerBand = numHeldPerBand;
+        this.numBooked = sum(numBookedPerBand);
+        this.numHeld = sum(numHeldPerBand);
+        this.version = VERSIONS.incrementAndGet();
+    }
+
+    /**
+     * Returns a seat map for a date on which no seats have been booked yet.
+     */
+    public static SeatMap empty() {
+        int numBands = TheatreLayout.PRICE_BANDS.length;
+        return new SeatMap(new long[NUM_WORDS], new long[NUM_WORDS], new int[numBands], new int[numBands]);
+    }
+
+    /**
+     * Returns the version of this seat map, which is higher than that of any seat map made before it. Two seat maps
+     * of a date with the same version are the same seat map.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the version of this seat map along with the run of the service it was made in, so that a seat map made
+     * after a restart never has the same version tag as one made before it, e.g. for an ETag.
+     */
+    public String getVersionTag() {
+        return INSTANCE_ID + "." + version;
+    }
+
+    /**
+     * Converts a collection of seat labels to a seat mask with one bit set per seat.
+     *
+     * @param labels the seat labels e.g. "A5"
+     * @return the seat mask, or null if any label is not a seat in the theatre or appears more than once
+     */
+    public static long[] maskOf(Collection<String> labels) {
+        long[] mask = new long[NUM_WORDS];
+        for (String label : labels) {
+            int row = TheatreLayout.rowOf(label);
+            if (row < 0) { //Not a seat in this theatre
+                return null;
+            }
+            int index = indexOf(row, TheatreLayout.seatNumberOf(label));
+            long bit = 1L << (index & (Long.SIZE - 1));
+            if ((mask[index / Long.SIZE] & bit) != 0) { //The same seat was requested twice
+                return null;
+            }
+            mask[index / Long.SIZE] |= bit;
+        }
+        return mask;
+    }
+
+    /**
+     * Converts seats of a single row to a seat mask.
+     *
+     * @param row     the zero-based row
+     * @param rowBits the seats of the row, with bit 0 being seat 1
+     * @return the seat mask
+     */
+    public static long[] maskOf(int row, int rowBits) {
+        long[] mask = new long[NUM_WORDS];
+        mask[row / ROWS_PER_WORD] = (long) (rowBits & ROW_MASK) << ((row % ROWS_PER_WORD) * BITS_PER_ROW);
+        return mask;
+    }
+
+    /**
+     * Converts a seat mask back to the labels of its seats, in row and seat order.
+     */
+    public static List<String> labelsOf(long[] mask) {
+        List<String> labels = new ArrayList<>();
+        for (int row = 0; row < TheatreLayout.NUM_ROWS; row++) {
+            int rowBits = rowBitsOf(mask, row);
+            for (int seat = 0; seat < TheatreLayout.NUM_SEATS_PER_ROW; seat++) {
+                if ((rowBits & (1 << seat)) != 0) {
+                    labels.add(TheatreLayout.labelOf(row, seat + 1));
+                }
+            }
+        }
+        return labels;
+    }
+
+    /**
+     * Returns the bit index of the seat at the given zero-based row and one-based seat number.
+     */
+    public static int indexOf(int row, int seatNum) {
+        return row * BITS_PER_ROW + (seatNum - 1);
+    }
+
+    /**
+     * Returns true if none of the seats in the mask are booked or held.
+     */
+    public boolean isAvailable(long[] mask) {
+        for (int i = 0; i < NUM_WORDS; i++) {
+            if (((booked[i] | held[i]) & mask[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if all of the seats in the mask are held.
+     */
+    public boolean isHeld(long[] mask) {
+        for (int i = 0; i < NUM_WORDS; i++) {
+            if ((held[i] & mask[i]) != mask[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a new seat map with the seats in the mask booked as well.
+     */
+    public SeatMap withBooked(long[] mask) {
+        long[] added = clear(mask, booked);
+        return new SeatMap(set(booked, added), held, plus(numBookedPerBand, added), numHeldPerBand);
+    }
+
+    /**
+     * Returns a new seat map with the seats in the mask no longer booked.
+     */
+    public SeatMap withReleased(long[] mask) {
+        long[] removed = and(mask, booked);
+        return new SeatMap(clear(booked, removed), held, minus(numBookedPerBand, removed), numHeldPerBand);
+    }
+
+    /**
+     * Returns a new seat map with the seats in the mask held as well.
+     */
+    public SeatMap withHeld(long[] mask) {
+        long[] added = clear(mask, held);
+        return new SeatMap(booked, set(held, added), numBookedPerBand, plus(numHeldPerBand, added));
+    }
+
+    /**
+     * Returns a new seat map with the seats in the mask no longer held.
+     */
+    public SeatMap withHoldReleased(long[] mask) {
+        long[] removed = and(mask, held);
+        return new SeatMap(booked, clear(held, removed), numBookedPerBand, minus(numHeldPerBand, removed));
+    }
+
+    /**
+     * Returns a new seat map with the held seats in the mask booked instead.
+     */
+    public SeatMap withHoldBooked(long[] mask) {
+        long[] added = clear(mask, booked);
+        long[] removed = and(mask, held);
+        return new SeatMap(set(booked, added), clear(held, removed), plus(numBookedPerBand, added),
+                minus(numHeldPerBand, removed));
+    }
+
+    private static long[] set(long[] bits, long[] mask) {
+        long[] next = bits.clone();
+        for (int i = 0; i < NUM_WORDS; i++) {
+            next[i] |= mask[i];
+        }
+        return next;
+    }
+
+    private static long[] clear(long[] bits, long[] mask) {
+        long[] next = bits.clone();
+        for (int i = 0; i < NUM_WORDS; i++) {
+            next[i] &= ~mask[i];
+        }
+        return next;
+    }
+
+    private static long[] and(long[] bits, long[] mask) {
+        long[] next = bits.clone();
+        for (int i = 0; i < NUM_WORDS; i++) {
+            next[i] &= mask[i];
+        }
+        return next;
+    }
+
+    /**
+     * Returns the counts per price band with the seats in the mask added to them.
+     */
+    private static int[] plus(int[] numPerBand, long[] mask) {
+        int[] next = numPerBand.clone();
+        for (int row = 0; row < TheatreLayout.NUM_ROWS; row++) {
+            next[BAND_OF_ROW[row]] += Integer.bitCount(rowBitsOf(mask, row));
+        }
+        return next;
+    }
+
+    /**
+     * Returns the counts per price band with the seats in the mask taken away from them.
+     */
+    private static int[] minus(int[] numPerBand, long[] mask) {
+        int[] next = numPerBand.clone();
+        for (int row = 0; row < TheatreLayout.NUM_ROWS; row++) {
+            next[BAND_OF_ROW[row]] -= Integer.bitCount(rowBitsOf(mask, row));
+        }
+        return next;
+    }
+
+    private static int[] bandOfEachRow() {
+        int[] bandOfRow = new int[TheatreLayout.NUM_ROWS];
+        int row = 0;
+        for (int band = 0; band < TheatreLayout.PRICE_BANDS.length; band++) {
+            for (int i = 0; i < TheatreLayout.PRICE_BANDS[band].numRows && row < bandOfRow.length; i++) {
+                bandOfRow[row++] = band;
+            }
+        }
+        return bandOfRow;
+    }
+
+    /**
+     * Returns true if the seat at the given zero-based row and one-based seat number is booked.
+     */
+    public boolean isBooked(int row, int seatNum) {
+        int index = indexOf(row, seatNum);
+        return (booked[index / Long.SIZE] & (1L << (index & (Long.SIZE - 1)))) != 0;
+    }
+
+    /**
+     * Returns the booked seats of the given zero-based row, with bit 0 being seat 1.
+     */
+    public int getRowMask(int row) {
+        return rowBitsOf(booked, row);
+    }
+
+    /**
+     * Returns the booked or held seats of the given zero-based row, with bit 0 being seat 1.
+     */
+    public int getOccupiedRowMask(int row) {
+        return rowBitsOf(booked, row) | rowBitsOf(held, row);
+    }
+
+    private static int rowBitsOf(long[] bits, int row) {
+        return (int) (bits[row / ROWS_PER_WORD] >>> ((row % ROWS_PER_WORD) * BITS_PER_ROW)) & ROW_MASK;
+    }
+
+    /**
+     * Returns a seat mask of the booked seats.
+     */
+    public long[] getBookedMask() {
+        return booked.clone();
+    }
+
+    /**
+     * Returns a seat mask of the held seats.
+     */
+    public long[] getHeldMask() {
+        return held.clone();
+    }
+
+    /**
+     * Returns a seat mask of the seats booked in this seat map but not in an earlier one.
+     */
+    public long[] bookedSince(SeatMap earlier) {
+        return clear(booked, earlier.booked);
+    }
+
+    /**
+     * Returns a seat mask of the seats held in this seat map but not in an earlier one.
+     */
+    public long[] heldSince(SeatMap earlier) {
+        return clear(held, earlier.held);
+    }
+
+    /**
+     * Returns a seat mask of the seats booked or held in an earlier seat map that are available in this one.
+     */
+    public long[] releasedSince(SeatMap earlier) {
+        return clear(set(earlier.booked, earlier.held), set(booked, held));
+    }
+
+    /**
+     * Returns the number of seats booked on this date.
+     */
+    public int getNumBooked() {
+        return numBooked;
+    }
+
+    /**
+     * Returns the number of seats held but not yet booked on this date.
+     */
+    public int getNumHeld() {
+        return numHeld;
+    }
+
+    /**
+     * Returns the number of seats booked in a price band on this date.
+     *
+     * @param band the index of the price band in {@link TheatreLayout#PRICE_BANDS}
+     */
+    public int getNumBooked(int band) {
+        return numBookedPerBand[band];
+    }
+
+    /**
+     * Returns the number of seats held but not yet booked in a price band on this date.
+     *
+     * @param band the index of the price band in {@link TheatreLayout#PRICE_BANDS}
+     */
+    public int getNumHeld(int band) {
+        return numHeldPerBand[band];
+    }
+
+    /**
+     * Returns the number of seats not yet booked on this date, including held seats.
+     */
+    public int getNumUnbooked() {
+        return TheatreLayout.NUM_SEATS_IN_THEATRE - getNumBooked();
+    }
+
+    private static int sum(int[] numPerBand) {
+        int sum = 0;
+        for (int num : numPerBand) {
+            sum += num;
+        }
+        return sum;
+    }
+}
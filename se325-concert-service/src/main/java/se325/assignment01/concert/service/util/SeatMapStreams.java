@@ -0,0 +1,142 @@
+package se325.assignment01.concert.service.util;
+
+import se325.assignment01.concert.common.dto.SeatMapChangesDTO;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.sse.OutboundSseEvent;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseBroadcaster;
+import javax.ws.rs.sse.SseEventSink;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Singleton class that streams the changes to the seats of each concert date to its clients as Server-Sent Events,
+ * with one broadcaster per date however many clients are watching it. A client first gets a "snapshot" event with all
+ * booked and held seats, then a "changes" event with the seats booked, held and released since the event before.
+ * <p>
+ * The {@link SeatInventory} tells the stream of a date that its seat map has changed, and the stream then compares the
+ * current seat map with the one it last sent on the {@link ApplicationExecutor}, so bookings never wait for clients and
+ * several changes in quick succession are sent as one event. A date's stream is kept once opened, as it is small.
+ */
+public class SeatMapStreams {
+
+    private static final SeatMapStreams _instance = new SeatMapStreams();
+
+    /**
+     * The stream of a single concert date.
+     */
+    private static final class Stream {
+        private final LocalDateTime date;
+        private final Sse sse;
+        private final SseBroadcaster broadcaster;
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+        private SeatMap lastSent; //The seat map the clients have been told about, guarded by the stream
+        private long nextEventId = 1; //Guarded by the stream
+
+        private Stream(LocalDateTime date, Sse sse, AtomicInteger numClients) {
+            this.date = date;
+            this.sse = sse;
+            this.broadcaster = sse.newBroadcaster();
+            this.lastSent = SeatInventory.instance().getSeatMap(date);
+            broadcaster.onClose(sink -> numClients.decrementAndGet());
+        }
+
+        /**
+         * Sends the client a snapshot of the seats, and then the changes along with the other clients.
+         */
+        private synchronized void open(SseEventSink sink) {
+            //So that the snapshot and the changes the other clients get start from the same seat map
+            flush(SeatInventory.instance().getSeatMap(date));
+            sink.send(event("snapshot", new SeatMapChangesDTO(SeatMap.labelsOf(lastSent.getBookedMask()),
+                    SeatMap.labelsOf(lastSent.getHeldMask()), List.of())));
+            broadcaster.register(sink);
+        }
+
+        private void scheduleFlush() {
+            if (flushScheduled.compareAndSet(false, true)) { //If already scheduled, that flush will see this change
+                ApplicationExecutor.instance().execute(() -> {
+                    flushScheduled.set(false); //Cleared before reading, so any later change schedules a flush again
+                    synchronized (this) {
+                        flush(SeatInventory.instance().getSeatMap(date));
+                    }
+                });
+            }
+        }
+
+        /**
+         * Sends the clients the seats that changed between the last sent seat map and the current one.
+         */
+        private void flush(SeatMap current) {
+            if (current == null || current == lastSent) {
+                return;
+            }
+            if (lastSent == null) { //The date had no seat map when the stream was created
+                lastSent = current;
+                return;
+            }
+
+            List<String> booked = SeatMap.labelsOf(current.bookedSince(lastSent));
+            List<String> held = SeatMap.labelsOf(current.heldSince(lastSent));
+            List<String> released = SeatMap.labelsOf(current.releasedSince(lastSent));
+            lastSent = current;
+            if (!booked.isEmpty() || !held.isEmpty() || !released.isEmpty()) {
+                broadcaster.broadcast(event("changes", new SeatMapChangesDTO(booked, held, released)));
+            }
+        }
+
+        private OutboundSseEvent event(String name, SeatMapChangesDTO changes) {
+            return sse.newEventBuilder()
+                    .id(Long.toString(nextEventId++))
+                    .name(name)
+                    .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                    .data(SeatMapChangesDTO.class, changes)
+                    .build();
+        }
+    }
+
+    //The stream of each concert date with clients (Key = date, Value = stream)
+    private final Map<LocalDateTime, Stream> streams = new ConcurrentHashMap<>();
+    private final AtomicInteger numClients = new AtomicInteger();
+
+    protected SeatMapStreams() {
+        Metrics.instance().gauge("seatStreams.clients", numClients::get);
+        Metrics.instance().gauge("seatStreams.dates", streams::size);
+    }
+
+    public static SeatMapStreams instance() {
+        return _instance;
+    }
+
+    /**
+     * Starts streaming the seats of the date to a client.
+     *
+     * @param date the concert date
+     * @param sink the client's event sink
+     * @param sse  to create the stream's events and broadcaster with
+     * @return false if there is no concert on that date, in which case the sink is left alone
+     */
+    public boolean open(LocalDateTime date, SseEventSink sink, Sse sse) {
+        if (SeatInventory.instance().getSeatMap(date) == null) {
+            return false;
+        }
+
+        numClients.incrementAndGet();
+        streams.computeIfAbsent(date, key -> new Stream(key, sse, numClients)).open(sink);
+        return true;
+    }
+
+    /**
+     * Tells the stream of the date, if anyone has opened it, that the date's seat map has changed.
+     */
+    public void changed(LocalDateTime date) {
+        Stream stream = streams.get(date);
+        if (stream != null) {
+            stream.scheduleFlush();
+        }
+    }
+}
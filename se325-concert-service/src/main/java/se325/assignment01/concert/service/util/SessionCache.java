@@ -0,0 +1,143 @@
+package se325.assignment01.concert.service.util;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Singleton class that caches which user each auth cookie belongs to, so that authenticating a request does not need
+ * a query. Each user has at most one session, the one of their latest login.
+ * <p>
+ * At most {@link Config#SESSION_CACHE_SIZE} sessions are kept, each for {@link Config#SESSION_TTL_SECONDS}, after
+ * which the session must be looked up in the database again. Sessions are kept in the order they were added, so the
+ * expired and oldest ones are always at the front to evict.
+ */
+public class SessionCache {
+
+    private static final SessionCache _instance = new SessionCache(Config.SESSION_CACHE_SIZE, Config.SESSION_TTL_SECONDS);
+
+    /**
+     * The user a session belongs to.
+     */
+    public static final class Session {
+        private final long userId;
+        private final String username;
+        private final long expiresAtNanos;
+
+        private Session(long userId, String username, long expiresAtNanos) {
+            this.userId = userId;
+            this.username = username;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+    }
+
+    private final int maxSessions;
+    private final long ttlNanos;
+    //The cached sessions, oldest first (Key = auth cookie, Value = session)
+    private final LinkedHashMap<String, Session> sessions = new LinkedHashMap<>();
+    //The auth cookie of each user's session (Key = user id, Value = auth cookie)
+    private final Map<Long, String> cookiesOfUsers = new HashMap<>();
+
+    protected SessionCache(int maxSessions, long ttlSeconds) {
+        this.maxSessions = maxSessions;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    public static SessionCache instance() {
+        return _instance;
+    }
+
+    /**
+     * Returns the session of the auth cookie, or null if it is not cached.
+     */
+    public synchronized Session get(String cookie) {
+        Session session = sessions.get(cookie);
+        if (session != null && session.expiresAtNanos - System.nanoTime() <= 0) {
+            remove(cookie);
+            return null;
+        }
+        return session;
+    }
+
+    /**
+     * Caches the session of a user, replacing any previous session of the user. Should be called whenever a user logs
+     * in, so that their old auth cookie stops working at once.
+     *
+     * @param cookie   the user's auth cookie
+     * @param userId   the user's id
+     * @param username the user's name
+     */
+    public synchronized void put(String cookie, long userId, String username) {
+        long now = System.nanoTime();
+        String oldCookie = cookiesOfUsers.get(userId);
+        if (oldCookie != null) {
+            remove(oldCookie);
+        }
+        evict(now);
+
+        sessions.put(cookie, new Session(userId, username, now + ttlNanos));
+        cookiesOfUsers.put(userId, cookie);
+    }
+
+    /**
+     * Caches the session of a user that was looked up in the database, unless the user already has a session cached,
+     * which would be from a newer login than the one looked up.
+     *
+     * @param cookie   the user's auth cookie
+     * @param userId   the user's id
+     * @param username the user's name
+     * @return the cached session, or null if the cookie is no longer the user's
+     */
+    public synchronized Session putIfAbsent(String cookie, long userId, String username) {
+        String cachedCookie = cookiesOfUsers.get(userId);
+        if (cachedCookie != null && get(cachedCookie) == null) { //The cached session has expired
+            cachedCookie = null;
+        }
+        if (cachedCookie == null) {
+            put(cookie, userId, username);
+        } else if (!cachedCookie.equals(cookie)) {
+            return null;
+        }
+        return sessions.get(cookie);
+    }
+
+    /**
+     * Forgets all sessions. Should be called when the users in the database are recreated.
+     */
+    public synchronized void clear() {
+        sessions.clear();
+        cookiesOfUsers.clear();
+    }
+
+    private void remove(String cookie) {
+        Session session = sessions.remove(cookie);
+        if (session != null) {
+            cookiesOfUsers.remove(session.userId, cookie);
+        }
+    }
+
+    /**
+     * Drops the expired sessions, and the oldest sessions while there are too many.
+     */
+    private void evict(long now) {
+        Iterator<Map.Entry<String, Session>> iterator = sessions.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Session> eldest = iterator.next();
+            if (sessions.size() < maxSessions && eldest.getValue().expiresAtNanos - now > 0) {
+                return;
+            }
+            iterator.remove();
+            cookiesOfUsers.remove(eldest.getValue().userId, eldest.getKey());
+        }
+    }
+}
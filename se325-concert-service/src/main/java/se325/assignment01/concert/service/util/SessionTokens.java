@@ -0,0 +1,169 @@
+package se325.assignment01.concert.service.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Singleton class that issues and checks signed session tokens, used as auth cookies when {@link Config#SESSION_TOKENS}
+ * is "signed". A token holds the id and name of the user and when it expires, signed with HMAC-SHA256, so it can be
+ * checked without the database and logging in does not need to save anything on the user:
+ * <code>
+ *     keyId.userId.expiresAtEpochSeconds.base64(username).base64(signature)
+ * </code>
+ * Tokens are signed with the current key of the key ring. When a key is rotated, the previous keys are kept so that
+ * tokens signed with them stay valid until they expire.
+ */
+public class SessionTokens {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(SessionTokens.class);
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MAX_KEYS = 3; //The current key and the two before it
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private static SessionTokens _instance = null;
+
+    /**
+     * The user a valid token was issued for.
+     */
+    public static final class Claims {
+        private final long userId;
+        private final String username;
+
+        private Claims(long userId, String username) {
+            this.userId = userId;
+            this.username = username;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+    }
+
+    private final long ttlSeconds;
+    //The signing keys, newest last (Key = key id, Value = key)
+    private volatile Map<String, SecretKeySpec> keys = new LinkedHashMap<>();
+    private volatile String currentKeyId;
+
+    protected SessionTokens(long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    public static synchronized SessionTokens instance() {
+        if (_instance == null) {
+            _instance = new SessionTokens(Config.SESSION_TOKEN_TTL_SECONDS);
+            _instance.loadKeys(Config.SESSION_TOKEN_KEYS);
+        }
+        return _instance;
+    }
+
+    /**
+     * Loads the keys from a list of "id:base64 secret" separated by commas, the first being the key to sign with. If
+     * the list is empty, a random key is used, so tokens are only valid until the service restarts. Keys are rotated by
+     * putting a new key first in the list and restarting, keeping the previous keys after it.
+     */
+    void loadKeys(String keyList) {
+        List<String[]> entries = new ArrayList<>();
+        for (String entry : keyList.split(",")) {
+            String[] idAndSecret = entry.trim().split(":", 2);
+            if (idAndSecret.length == 2) {
+                entries.add(idAndSecret);
+            }
+        }
+
+        if (entries.isEmpty()) {
+            byte[] secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+            rotate("0", secret);
+            LOGGER.info("loadKeys(): No token keys configured, tokens are signed with a random key");
+            return;
+        }
+        for (int i = entries.size() - 1; i >= 0; i--) { //Oldest first, so that the first key ends up current
+            rotate(entries.get(i)[0], Base64.getDecoder().decode(entries.get(i)[1]));
+        }
+    }
+
+    /**
+     * Makes a new key the one that tokens are signed with. Tokens signed with the previous keys are still accepted,
+     * but only the latest few keys are kept.
+     *
+     * @param keyId  the id of the key, which must not contain '.'
+     * @param secret the key
+     */
+    synchronized void rotate(String keyId, byte[] secret) {
+        Map<String, SecretKeySpec> next = new LinkedHashMap<>(keys);
+        next.remove(keyId);
+        next.put(keyId, new SecretKeySpec(secret, ALGORITHM));
+        while (next.size() > MAX_KEYS) {
+            next.remove(next.keySet().iterator().next());
+        }
+        keys = next;
+        currentKeyId = keyId;
+    }
+
+    /**
+     * Issues a token for the user, signed with the current key.
+     */
+    public String issue(long userId, String username) {
+        String keyId = currentKeyId;
+        long expiresAt = System.currentTimeMillis() / 1000 + ttlSeconds;
+        String payload = keyId + "." + userId + "." + expiresAt + "."
+                + ENCODER.encodeToString(username.getBytes(StandardCharsets.UTF_8));
+        return payload + "." + ENCODER.encodeToString(sign(keys.get(keyId), payload));
+    }
+
+    /**
+     * Checks a token.
+     *
+     * @param token the token
+     * @return who the token was issued for, or null if it is malformed, forged, signed with an unknown key or expired
+     */
+    public Claims verify(String token) {
+        String[] parts = token.split("\\.");
+        if (parts.length != 5) {
+            return null;
+        }
+
+        try {
+            SecretKeySpec key = keys.get(parts[0]);
+            String payload = token.substring(0, token.lastIndexOf('.'));
+            //Compare in constant time, so the signature can't be guessed byte by byte from the response times
+            if (key == null || !MessageDigest.isEqual(sign(key, payload), DECODER.decode(parts[4]))) {
+                return null;
+            }
+            if (Long.parseLong(parts[2]) < System.currentTimeMillis() / 1000) {
+                return null;
+            }
+            return new Claims(Long.parseLong(parts[1]), new String(DECODER.decode(parts[3]), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) { //Not base64, or not a number
+            return null;
+        }
+    }
+
+    private static byte[] sign(SecretKeySpec key, String payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) { //Every JVM supports HmacSHA256
+            throw new IllegalStateException(e);
+        }
+    }
+}
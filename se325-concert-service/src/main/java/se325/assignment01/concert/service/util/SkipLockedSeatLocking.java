@@ -0,0 +1,35 @@
+package se325.assignment01.concert.service.util;
+
+import org.hibernate.LockOptions;
+import se325.assignment01.concert.service.domain.Seat;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Claims seats by locking their rows with SELECT ... FOR UPDATE SKIP LOCKED, so rows locked by a concurrent booking are
+ * left out instead of waited for, and a booking fails straight away if any of its seats are being booked by someone
+ * else. "Best available" bookings don't need anything more from it: their seats are chosen and claimed in the
+ * {@link SeatInventory} by the {@link SeatAllocator} first, so they only ever write seats nobody else holds.
+ * <p>
+ * Databases whose Hibernate dialect has no SKIP LOCKED support (e.g. H2) get a plain FOR UPDATE, which behaves like
+ * {@link PessimisticSeatLocking}.
+ */
+public class SkipLockedSeatLocking implements SeatLockingStrategy {
+
+    @Override
+    public List<Seat> claim(EntityManager em, LocalDateTime date, List<String> labels) {
+        List<Seat> lockedSeats = em.createQuery(
+                "select s from Seat s where s.date = :date and s.label in :labels and s.isBooked = false " +
+                        "order by s.label", Seat.class)
+                .setParameter("date", date).setParameter("labels", labels)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setHint("javax.persistence.lock.timeout", LockOptions.SKIP_LOCKED)
+                .getResultList();
+
+        //Any requested seat missing is either booked or locked by another booking
+        return OptimisticSeatLocking.markBooked(lockedSeats, labels.size());
+    }
+}
@@ -0,0 +1,135 @@
+package se325.assignment01.concert.service.util;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Singleton class that keeps the subscriptions to sell-out notifications, indexed by the performance (concert and
+ * date) they are for and then sorted by the percentage of seats booked at which they want to be notified. A booking
+ * then only needs to look at the subscriptions whose threshold it has just crossed, rather than every subscription to
+ * the concert, and each subscription is notified once.
+ * <p>
+ * Subscriptions are removed as soon as they are notified, time out or their client disconnects, along with the index
+ * of a performance once it has no subscriptions left. At most {@link Config#MAX_SUBSCRIPTIONS} are kept at once.
+ */
+public class SubscriptionRegistry {
+
+    private static final SubscriptionRegistry _instance = new SubscriptionRegistry(Config.MAX_SUBSCRIPTIONS);
+
+    private final int maxSubscriptions;
+    private final AtomicInteger numSubscriptions = new AtomicInteger();
+    //The subscriptions of each performance (Key = performance, Value = subscriptions by percentage booked)
+    private final Map<Performance, NavigableMap<Integer, List<Subscription>>> subscriptions = new ConcurrentHashMap<>();
+
+    protected SubscriptionRegistry(int maxSubscriptions) {
+        this.maxSubscriptions = maxSubscriptions;
+        Metrics.instance().gauge("subscriptions.live", numSubscriptions::get);
+        Metrics.instance().gauge("subscriptions.performances", subscriptions::size);
+    }
+
+    public static SubscriptionRegistry instance() {
+        return _instance;
+    }
+
+    /**
+     * Adds a subscription, to be notified when the percentage of seats booked for its concert date reaches its
+     * threshold.
+     *
+     * @return false if there are already too many subscriptions, in which case the subscription is not added
+     */
+    public boolean add(Subscription subscription) {
+        if (numSubscriptions.incrementAndGet() > maxSubscriptions) {
+            numSubscriptions.decrementAndGet();
+            return false;
+        }
+
+        Performance performance = performanceOf(subscription);
+        while (true) {
+            NavigableMap<Integer, List<Subscription>> byThreshold =
+                    subscriptions.computeIfAbsent(performance, key -> new TreeMap<>());
+            synchronized (byThreshold) {
+                if (subscriptions.get(performance) != byThreshold) { //It was emptied and removed in the meantime
+                    continue;
+                }
+                byThreshold.computeIfAbsent(subscription.getConcertInfoSubscriptionDTO().getPercentageBooked(),
+                        key -> new ArrayList<>()).add(subscription);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Removes a subscription, e.g. because it timed out or its client has gone. Does nothing if it has already been
+     * removed.
+     */
+    public void remove(Subscription subscription) {
+        Performance performance = performanceOf(subscription);
+        NavigableMap<Integer, List<Subscription>> byThreshold = subscriptions.get(performance);
+        if (byThreshold == null) {
+            return;
+        }
+
+        synchronized (byThreshold) {
+            int threshold = subscription.getConcertInfoSubscriptionDTO().getPercentageBooked();
+            List<Subscription> subs = byThreshold.get(threshold);
+            if (subs == null || !subs.remove(subscription)) {
+                return;
+            }
+            numSubscriptions.decrementAndGet();
+            if (subs.isEmpty()) {
+                byThreshold.remove(threshold);
+            }
+            removeIfEmpty(performance, byThreshold);
+        }
+    }
+
+    /**
+     * Removes and returns the subscriptions of a performance whose threshold is at or below the percentage of seats
+     * now booked.
+     *
+     * @param concertId        the concert
+     * @param date             the concert date
+     * @param percentageBooked the percentage of seats now booked
+     * @return the subscriptions to notify, which may be empty
+     */
+    public List<Subscription> takeReached(long concertId, LocalDateTime date, int percentageBooked) {
+        Performance performance = new Performance(concertId, date);
+        NavigableMap<Integer, List<Subscription>> byThreshold = subscriptions.get(performance);
+        List<Subscription> reached = new ArrayList<>();
+        if (byThreshold == null) {
+            return reached;
+        }
+
+        synchronized (byThreshold) {
+            NavigableMap<Integer, List<Subscription>> crossed = byThreshold.headMap(percentageBooked, true);
+            for (Collection<Subscription> subs : crossed.values()) {
+                reached.addAll(subs);
+            }
+            crossed.clear(); //Also removes them from the performance's subscriptions
+            numSubscriptions.addAndGet(-reached.size());
+            removeIfEmpty(performance, byThreshold);
+        }
+        return reached;
+    }
+
+    /**
+     * Drops the index of a performance with no subscriptions left. Must hold the lock of the index.
+     */
+    private void removeIfEmpty(Performance performance, NavigableMap<Integer, List<Subscription>> byThreshold) {
+        if (byThreshold.isEmpty()) {
+            subscriptions.remove(performance, byThreshold);
+        }
+    }
+
+    private static Performance performanceOf(Subscription subscription) {
+        return new Performance(subscription.getConcertInfoSubscriptionDTO().getConcertId(),
+                subscription.getConcertInfoSubscriptionDTO().getDate());
+    }
+}
@@ -5,6 +5,7 @@ import se325.assignment01.concert.service.domain.Seat;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.HashSet;
+import java.util.Objects;
 import java.util.Set;
 
 /**
@@ -21,6 +22,8 @@ public class TheatreLayout {
             new PriceBand("Gold Seating", new BigDecimal(120), 3),
             new PriceBand("Silver Seating", new BigDecimal(90), 2)
     };
+    // Identifies the layout above, so that clients can tell whether a layout they have cached is still current
+    public static final int LAYOUT_VERSION = layoutVersion();
 
     /**
      * A utility function that creates all required {@link Seat} objects for a concert on the given date.
@@ -62,6 +65,91 @@ public class TheatreLayout {
 
     }
 
+    /**
+     * Returns the zero-based row index of the given seat label (e.g. 0 for "A5"), or -1 if the label is not a seat in
+     * this layout.
+     *
+     * @param label the seat label
+     * @return the row index, or -1
+     */
+    public static int rowOf(String label) {
+        if (label == null || label.length() < 2) {
+            return -1;
+        }
+        int row = label.charAt(0) - 'A';
+        return (row >= 0 && row < NUM_ROWS && seatNumberOf(label) > 0) ? row : -1;
+    }
+
+    /**
+     * Returns the one-based seat number of the given seat label (e.g. 5 for "A5"), or -1 if the label is not a seat in
+     * this layout.
+     *
+     * @param label the seat label
+     * @return the seat number, or -1
+     */
+    public static int seatNumberOf(String label) {
+        if (label == null || label.length() < 2 || label.length() > 3) {
+            return -1;
+        }
+        int seatNum = 0;
+        for (int i = 1; i < label.length(); i++) {
+            char c = label.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            seatNum = seatNum * 10 + (c - '0');
+        }
+        return (seatNum >= 1 && seatNum <= NUM_SEATS_PER_ROW && label.charAt(1) != '0') ? seatNum : -1;
+    }
+
+    /**
+     * Returns the label of the seat at the given zero-based row index and one-based seat number (e.g. "A5").
+     */
+    public static String labelOf(int row, int seatNum) {
+        return "" + (char) ('A' + row) + seatNum;
+    }
+
+    /**
+     * Returns the pricing band which the given zero-based row falls into, following the same allocation as
+     * {@link #createSeatsFor(LocalDateTime)}.
+     *
+     * @param row the row index
+     * @return the row's pricing band
+     */
+    public static PriceBand priceBandOf(int row) {
+        int firstRowOfBand = 0;
+        for (PriceBand band : PRICE_BANDS) {
+            if (row < firstRowOfBand + band.numRows) {
+                return band;
+            }
+            firstRowOfBand += band.numRows;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the pricing band with the given name (e.g. "Gold Seating"), or null if there is no such band.
+     */
+    public static PriceBand priceBandNamed(String name) {
+        for (PriceBand band : PRICE_BANDS) {
+            if (band.name.equals(name)) {
+                return band;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a hash of the rows, seats and price bands, which changes whenever the layout does.
+     */
+    private static int layoutVersion() {
+        int version = Objects.hash(NUM_ROWS, NUM_SEATS_PER_ROW);
+        for (PriceBand band : PRICE_BANDS) {
+            version = 31 * version + Objects.hash(band.name, band.price, band.numRows);
+        }
+        return version;
+    }
+
     public static class PriceBand {
         public String name;
         public BigDecimal price;
@@ -0,0 +1,152 @@
+package se325.assignment01.concert.service.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A hashed timing wheel, which runs tasks after a delay with O(1) cost to schedule or cancel a task no matter how many
+ * are pending. The wheel is a ring of buckets, one per tick; a task is put into the bucket of the tick it is due in,
+ * along with the number of full turns of the wheel still to go. A single thread advances the wheel one bucket per tick
+ * and runs the tasks in that bucket whose turns are up, so tasks run up to one tick late.
+ * <p>
+ * New tasks are handed to the wheel thread through a queue, so only the wheel thread ever touches the buckets.
+ */
+public class TimingWheel {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(TimingWheel.class);
+
+    /**
+     * A scheduled task, which can be cancelled before it runs.
+     */
+    public static class Timeout {
+        private final Runnable task;
+        private final long deadlineTick;
+        private long remainingRounds;
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /**
+         * Stops the task from running, if it has not run yet.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private final long tickNanos;
+    private final List<ArrayDeque<Timeout>> buckets;
+    private final int mask;
+    private final long startNanos = System.nanoTime();
+    private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private long tick = 0; //The last tick processed, only used by the wheel thread
+
+    /**
+     * Creates a timing wheel and starts its thread.
+     *
+     * @param name       the name of the wheel thread
+     * @param tickMillis how long one tick is, which is the precision of the delays
+     * @param numBuckets the number of buckets, rounded up to a power of two; delays longer than this many ticks just
+     *                   take more than one turn of the wheel
+     */
+    public TimingWheel(String name, long tickMillis, int numBuckets) {
+        int size = Integer.highestOneBit(Math.max(1, numBuckets - 1)) << 1;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.buckets = new ArrayList<>(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            buckets.add(new ArrayDeque<>());
+        }
+
+        thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Schedules the task to run on the wheel thread after the delay. The task should be quick, as the wheel can't move
+     * on until it is done.
+     *
+     * @param task  the task
+     * @param delay the delay
+     * @param unit  the unit of the delay
+     * @return a handle to cancel the task with
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        long deadlineNanos = System.nanoTime() - startNanos + unit.toNanos(delay);
+        Timeout timeout = new Timeout(task, (deadlineNanos + tickNanos - 1) / tickNanos);
+        newTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stops the wheel thread. Tasks not yet run never will be.
+     */
+    public void stop() {
+        thread.interrupt();
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            //Sleep until the next tick is due
+            long sleepNanos = (tick + 1) * tickNanos - (System.nanoTime() - startNanos);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            tick++;
+
+            addNewTimeouts();
+            expire(buckets.get((int) (tick & mask)));
+        }
+    }
+
+    /**
+     * Puts the newly scheduled tasks into the buckets of their deadlines.
+     */
+    private void addNewTimeouts() {
+        Timeout timeout;
+        while ((timeout = newTimeouts.poll()) != null) {
+            long dueTick = Math.max(timeout.deadlineTick, tick); //If it is already overdue, run it this tick
+            timeout.remainingRounds = (dueTick - tick) / buckets.size();
+            buckets.get((int) (dueTick & mask)).add(timeout);
+        }
+    }
+
+    /**
+     * Runs the tasks of the bucket that are due this turn of the wheel, and drops the cancelled ones. Each task is
+     * taken off the front of the bucket and the ones still to run are put back at the end, so going through the bucket
+     * costs the same per task however many tasks it has.
+     */
+    private void expire(ArrayDeque<Timeout> bucket) {
+        for (int remaining = bucket.size(); remaining > 0; remaining--) {
+            Timeout timeout = bucket.poll();
+            if (timeout.cancelled) {
+                continue;
+            } else if (timeout.remainingRounds <= 0) {
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException e) {
+                    LOGGER.error("expire(): Scheduled task failed", e);
+                }
+            } else {
+                timeout.remainingRounds--;
+                bucket.add(timeout);
+            }
+        }
+    }
+}
@@ -1,26 +1,45 @@
 package se325.assignment01.concert.service;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.*;
 import se325.assignment01.concert.common.dto.*;
 import se325.assignment01.concert.common.jackson.LocalDateTimeDeserializer;
+import se325.assignment01.concert.common.seatmap.SeatMapCodec;
+import se325.assignment01.concert.common.seatmap.SeatOccupancy;
+import se325.assignment01.concert.common.types.BatchMode;
 import se325.assignment01.concert.common.types.Genre;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.Cookie;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.sse.InboundSseEvent;
+import javax.ws.rs.sse.SseEventSource;
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.Assert.*;
 
@@ -267,6 +286,29 @@ public class ConcertResourceIT {
         assertFalse(authCookie.getValue().isEmpty());
     }
 
+    /**
+     * Tests that logging in again ends the user's previous session, so the old auth cookie no longer works.
+     */
+    @Test
+    public void testLoginEndsPreviousSession() {
+        Response response = login(client, "testuser", "pa55word");
+        Cookie oldCookie = response.getCookies().get("auth").toCookie();
+
+        // Log in again from another client
+        Client otherClient = ClientBuilder.newClient();
+        try {
+            login(otherClient, "testuser", "pa55word");
+            assertEquals(Response.Status.OK.getStatusCode(), otherClient.target(WEB_SERVICE_URI + "/bookings")
+                    .request().get().getStatus());
+        } finally {
+            otherClient.close();
+        }
+
+        // The old cookie is no longer accepted
+        response = client.target(WEB_SERVICE_URI + "/bookings").request().cookie(oldCookie).get();
+        assertEquals(Response.Status.UNAUTHORIZED.getStatusCode(), response.getStatus());
+    }
+
     /**
      * Tests that a 401 error is returned when attempting to book while not logged in, and that no booking is actually
      * made.
@@ -661,6 +703,359 @@ public class ConcertResourceIT {
         }
     }
 
+    /**
+     * Tests that seats held by one user can't be booked by another user, and that the user who holds them can book
+     * them. The held seats should be unbooked until the hold is booked, and retrying the booking of the hold with the
+     * same idempotency key should get the same booking rather than a 404.
+     */
+    @Test
+    public void testHoldAndBookSeats() {
+        // Log in as user 1
+        login(client, "testuser", "pa55word");
+
+        // Hold some seats
+        BookingRequestDTO bReq = new BookingRequestDTO(1, LocalDateTime.of(2020, 2, 15, 20, 0, 0),
+                Arrays.asList("C5", "C6"));
+        Response response = client.target(WEB_SERVICE_URI + "/holds").request().post(Entity.json(bReq));
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+        SeatHoldDTO hold = response.readEntity(SeatHoldDTO.class);
+        assertEquals(Arrays.asList("C5", "C6"), hold.getSeatLabels());
+
+        // The held seats are not booked yet
+        response = client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00?status=Booked").request().get();
+        assertEquals(0, response.readEntity(new GenericType<List<SeatDTO>>() {
+        }).size());
+        assertEquals("2", response.getHeaderString("X-Seats-Held"));
+        AvailabilityDTO availability = getAvailability(client, 1);
+        assertEquals(2, availability.getNumSeatsHeld());
+        assertEquals(2, availability.getPriceBands().get(0).getNumSeatsHeld());
+
+        // Log in as user 2
+        Client user2Client = ClientBuilder.newClient();
+        try {
+            login(user2Client, "testuser2", "pa55word");
+
+            // User 2 can't book the held seats, or book user 1's hold
+            response = attemptBooking(user2Client, 1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), "C6", "C7");
+            assertEquals(Response.Status.FORBIDDEN.getStatusCode(), response.getStatus());
+            response = user2Client.target(WEB_SERVICE_URI + "/holds/" + hold.getId() + "/booking")
+                    .request().post(null);
+            assertEquals(Response.Status.FORBIDDEN.getStatusCode(), response.getStatus());
+        } finally {
+            user2Client.close();
+        }
+
+        // User 1 books the hold, then retries
+        response = client.target(WEB_SERVICE_URI + "/holds/" + hold.getId() + "/booking").request()
+                .header("Idempotency-Key", "hold-booking-1").post(null);
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+        Response retry = client.target(WEB_SERVICE_URI + "/holds/" + hold.getId() + "/booking").request()
+                .header("Idempotency-Key", "hold-booking-1").post(null);
+        assertEquals(Response.Status.CREATED.getStatusCode(), retry.getStatus());
+        assertEquals(response.getLocation(), retry.getLocation());
+        BookingDTO booking = client.target(response.getLocation()).request().get(BookingDTO.class);
+        assertEquals(2, booking.getSeats().size());
+        availability = getAvailability(client, 1);
+        assertEquals(0, availability.getNumSeatsHeld());
+        assertEquals(2, availability.getNumSeatsBooked());
+        assertEquals(2, availability.getPriceBands().get(0).getNumSeatsBooked());
+
+        // The hold has ended
+        response = client.target(WEB_SERVICE_URI + "/holds/" + hold.getId()).request().delete();
+        assertEquals(Response.Status.NOT_FOUND.getStatusCode(), response.getStatus());
+    }
+
+    /**
+     * Tests that a user can't release a hold made by another user, and that the hold can still be booked by the user
+     * who made it afterwards.
+     */
+    @Test
+    public void testReleaseOtherUsersHold() {
+        // Log in as user 1
+        login(client, "testuser", "pa55word");
+
+        // Hold some seats
+        BookingRequestDTO bReq = new BookingRequestDTO(1, LocalDateTime.of(2020, 2, 15, 20, 0, 0),
+                Arrays.asList("C5", "C6"));
+        Response response = client.target(WEB_SERVICE_URI + "/holds").request().post(Entity.json(bReq));
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+        SeatHoldDTO hold = response.readEntity(SeatHoldDTO.class);
+
+        // Log in as user 2
+        Client user2Client = ClientBuilder.newClient();
+        try {
+            login(user2Client, "testuser2", "pa55word");
+
+            // User 2 can't release user 1's hold
+            response = user2Client.target(WEB_SERVICE_URI + "/holds/" + hold.getId()).request().delete();
+            assertEquals(Response.Status.FORBIDDEN.getStatusCode(), response.getStatus());
+        } finally {
+            user2Client.close();
+        }
+
+        // The seats are still held, and user 1 can book the hold
+        assertEquals(2, getAvailability(client, 1).getNumSeatsHeld());
+        response = client.target(WEB_SERVICE_URI + "/holds/" + hold.getId() + "/booking").request().post(null);
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+    }
+
+    /**
+     * Tests that the best available seats are the centre seats of the front row of the requested price band, and that
+     * seats which are already booked are avoided.
+     */
+    @Test
+    public void testBestAvailableBooking() {
+        // Log in
+        login(client, "testuser", "pa55word");
+
+        // Book the centre of row F, the front row of the Gold band
+        Response response = attemptBooking(client, 1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), "F6");
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+
+        // Ask for the best two Gold seats
+        BestAvailableRequestDTO bReq = new BestAvailableRequestDTO(1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), 2,
+                "Gold Seating");
+        response = client.target(WEB_SERVICE_URI + "/bookings/best-available").request().post(Entity.json(bReq));
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+
+        BookingDTO booking = client.target(response.getLocation()).request().get(BookingDTO.class);
+        List<String> labels = booking.getSeats().stream().map(SeatDTO::getLabel).sorted().collect(Collectors.toList());
+        assertEquals(Arrays.asList("F7", "F8"), labels);
+
+        // A block longer than a row can't be booked
+        bReq.setNumberOfSeats(13);
+        response = client.target(WEB_SERVICE_URI + "/bookings/best-available").request().post(Entity.json(bReq));
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+    }
+
+    /**
+     * Tests that a batch of bookings in AllOrNothing mode makes none of the bookings if one of them fails, and that in
+     * BestEffort mode the other bookings are still made.
+     */
+    @Test
+    public void testBatchBooking() {
+        // Log in
+        login(client, "testuser", "pa55word");
+
+        // Book a seat that the batch will also ask for
+        Response response = attemptBooking(client, 1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), "C5");
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+
+        List<BookingRequestDTO> bookings = Arrays.asList(
+                new BookingRequestDTO(1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), Arrays.asList("A1", "A2")),
+                new BookingRequestDTO(1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), Arrays.asList("C5", "C6")));
+
+        // All or nothing - nothing is booked
+        response = client.target(WEB_SERVICE_URI + "/bookings/batch").request()
+                .post(Entity.json(new BatchBookingRequestDTO(bookings, BatchMode.AllOrNothing)));
+        assertEquals(Response.Status.CONFLICT.getStatusCode(), response.getStatus());
+        List<BookingResultDTO> results = response.readEntity(new GenericType<List<BookingResultDTO>>() {
+        });
+        assertEquals(Response.Status.CONFLICT.getStatusCode(), results.get(0).getStatus());
+        assertEquals(Response.Status.FORBIDDEN.getStatusCode(), results.get(1).getStatus());
+
+        // Best effort - the first booking is made
+        response = client.target(WEB_SERVICE_URI + "/bookings/batch").request()
+                .post(Entity.json(new BatchBookingRequestDTO(bookings, BatchMode.BestEffort)));
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        results = response.readEntity(new GenericType<List<BookingResultDTO>>() {
+        });
+        assertEquals(Response.Status.CREATED.getStatusCode(), results.get(0).getStatus());
+        assertEquals(Response.Status.FORBIDDEN.getStatusCode(), results.get(1).getStatus());
+
+        BookingDTO booking = client.target(results.get(0).getLocation()).request().get(BookingDTO.class);
+        assertEquals(2, booking.getSeats().size());
+
+        // Make sure only the seat booked first and the first booking of the batch are booked
+        List<SeatDTO> bookedSeats = client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00?status=Booked")
+                .request().get(new GenericType<List<SeatDTO>>() {
+                });
+        assertEquals(3, bookedSeats.size());
+    }
+
+    /**
+     * Tests that when one booking of a BestEffort batch fails with a database error, the other bookings are still made
+     * and the seats of the failed booking are free to book again.
+     */
+    @Test
+    public void testBatchBookingRecoversFromFailure() {
+        // Log in
+        login(client, "testuser", "pa55word");
+
+        // The database finds A1 booked when the whole batch is written, and then fails when A1 is booked on its own
+        Response response = client.target(WEB_SERVICE_URI + "-test/faults").queryParam("label", "A1")
+                .queryParam("fault", "TAKEN").queryParam("fault", "ERROR").request().post(null);
+        assertEquals(Response.Status.NO_CONTENT.getStatusCode(), response.getStatus());
+
+        try {
+            List<BookingRequestDTO> bookings = Arrays.asList(
+                    new BookingRequestDTO(1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), Arrays.asList("A1", "A2")),
+                    new BookingRequestDTO(1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), Arrays.asList("B1", "B2")));
+            response = client.target(WEB_SERVICE_URI + "/bookings/batch").request()
+                    .post(Entity.json(new BatchBookingRequestDTO(bookings, BatchMode.BestEffort)));
+            assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+            List<BookingResultDTO> results = response.readEntity(new GenericType<List<BookingResultDTO>>() {
+            });
+            assertEquals(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), results.get(0).getStatus());
+            assertEquals(Response.Status.CREATED.getStatusCode(), results.get(1).getStatus());
+        } finally {
+            client.target(WEB_SERVICE_URI + "-test/faults").request().delete();
+        }
+
+        // Only the seats of the second booking are booked, in the seat map as well as the database
+        assertEquals(2, getAvailability(client, 1).getNumSeatsBooked());
+        List<SeatDTO> bookedSeats = client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00?status=Booked")
+                .request().get(new GenericType<List<SeatDTO>>() {
+                });
+        assertEquals(2, bookedSeats.size());
+
+        // The seats of the failed booking can be booked
+        response = attemptBooking(client, 1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), "A1", "A2");
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+    }
+
+    /**
+     * Tests that retrying a booking with the same idempotency key gets the response of the first attempt rather than a
+     * 403, and that the key can't be reused for a different booking.
+     */
+    @Test
+    public void testIdempotentBookingRetry() {
+        // Log in
+        login(client, "testuser", "pa55word");
+
+        BookingRequestDTO bReq = new BookingRequestDTO(1, LocalDateTime.of(2020, 2, 15, 20, 0, 0),
+                Arrays.asList("C5", "C6"));
+
+        // Make the booking, then retry it
+        Response first = client.target(WEB_SERVICE_URI + "/bookings").request()
+                .header("Idempotency-Key", "booking-1").post(Entity.json(bReq));
+        assertEquals(Response.Status.CREATED.getStatusCode(), first.getStatus());
+        Response retry = client.target(WEB_SERVICE_URI + "/bookings").request()
+                .header("Idempotency-Key", "booking-1").post(Entity.json(bReq));
+        assertEquals(Response.Status.CREATED.getStatusCode(), retry.getStatus());
+        assertEquals(first.getLocation(), retry.getLocation());
+
+        // Only one booking was made
+        List<BookingDTO> bookings = client.target(WEB_SERVICE_URI + "/bookings")
+                .request().get(new GenericType<List<BookingDTO>>() {
+                });
+        assertEquals(1, bookings.size());
+
+        // The key can't be used for other seats
+        bReq.setSeatLabels(Arrays.asList("C7"));
+        Response other = client.target(WEB_SERVICE_URI + "/bookings").request()
+                .header("Idempotency-Key", "booking-1").post(Entity.json(bReq));
+        assertEquals(422, other.getStatus());
+    }
+
+    /**
+     * Tests that retrying a batch of bookings with the same idempotency key gets the outcome of each booking from the
+     * first attempt, without booking anything twice.
+     */
+    @Test
+    public void testIdempotentBatchBookingRetry() {
+        // Log in
+        login(client, "testuser", "pa55word");
+
+        List<BookingRequestDTO> bookings = Arrays.asList(
+                new BookingRequestDTO(1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), Arrays.asList("C5", "C6")),
+                new BookingRequestDTO(2, LocalDateTime.of(2019, 9, 14, 20, 0, 0), Arrays.asList("A1", "A2")));
+        BatchBookingRequestDTO batch = new BatchBookingRequestDTO(bookings, BatchMode.AllOrNothing);
+
+        // Make the bookings, then retry them
+        Response first = client.target(WEB_SERVICE_URI + "/bookings/batch").request()
+                .header("Idempotency-Key", "batch-1").post(Entity.json(batch));
+        assertEquals(Response.Status.OK.getStatusCode(), first.getStatus());
+        List<BookingResultDTO> firstResults = first.readEntity(new GenericType<List<BookingResultDTO>>() {
+        });
+        Response retry = client.target(WEB_SERVICE_URI + "/bookings/batch").request()
+                .header("Idempotency-Key", "batch-1").post(Entity.json(batch));
+        assertEquals(Response.Status.OK.getStatusCode(), retry.getStatus());
+        List<BookingResultDTO> retryResults = retry.readEntity(new GenericType<List<BookingResultDTO>>() {
+        });
+
+        assertEquals(2, retryResults.size());
+        for (int i = 0; i < firstResults.size(); i++) {
+            assertEquals(Response.Status.CREATED.getStatusCode(), retryResults.get(i).getStatus());
+            assertEquals(firstResults.get(i).getLocation(), retryResults.get(i).getLocation());
+        }
+
+        // Only the two bookings of the first attempt were made
+        List<BookingDTO> userBookings = client.target(WEB_SERVICE_URI + "/bookings")
+                .request().get(new GenericType<List<BookingDTO>>() {
+                });
+        assertEquals(2, userBookings.size());
+    }
+
+    /**
+     * Tests that many concurrent bookings of overlapping seats, including AllOrNothing batches asking for two dates in
+     * opposite orders, are all answered, and that each seat is booked by at most one of them. The integration tests
+     * run the service with the booking pipeline on several lanes, which the two dates are on, so this also makes sure
+     * that the batches' gates don't deadlock the lanes.
+     */
+    @Test
+    public void testConcurrentOverlappingBookings() throws InterruptedException, ExecutionException, TimeoutException {
+        LocalDateTime date1 = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+        LocalDateTime date2 = LocalDateTime.of(2019, 9, 19, 20, 0, 0);
+
+        // Log in as both users. Each request is sent by its own client with one of the users' cookies
+        Cookie[] cookies = new Cookie[2];
+        cookies[0] = login(client, "testuser", "pa55word").getCookies().get("auth").toCookie();
+        Client user2Client = ClientBuilder.newClient();
+        try {
+            cookies[1] = login(user2Client, "testuser2", "pa55word").getCookies().get("auth").toCookie();
+        } finally {
+            user2Client.close();
+        }
+
+        // Each seat in rows A and B of the first date is asked for by two single bookings, and each seat in row C of
+        // both dates by two batches
+        List<List<BookingRequestDTO>> requests = new ArrayList<>();
+        for (char row = 'A'; row <= 'B'; row++) {
+            for (int num = 1; num <= 11; num++) {
+                requests.add(Arrays.asList(
+                        new BookingRequestDTO(1, date1, Arrays.asList("" + row + num, "" + row + (num + 1)))));
+            }
+        }
+        for (int num = 1; num <= 11; num++) {
+            List<String> seats = Arrays.asList("C" + num, "C" + (num + 1));
+            BookingRequestDTO first = new BookingRequestDTO(1, date1, seats);
+            BookingRequestDTO second = new BookingRequestDTO(2, date2, seats);
+            requests.add(num % 2 == 0 ? Arrays.asList(first, second) : Arrays.asList(second, first));
+        }
+        Collections.shuffle(requests);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<List<BookingRequestDTO>>> outcomes = new ArrayList<>();
+        try {
+            for (int i = 0; i < requests.size(); i++) {
+                outcomes.add(executor.submit(bookConcurrently(cookies[i % 2], requests.get(i))));
+            }
+
+            // Every request is answered, and the seats of the successful ones are never booked twice
+            List<String> bookedOnDate1 = new ArrayList<>();
+            List<String> bookedOnDate2 = new ArrayList<>();
+            int numBatchesBooked = 0;
+            for (Future<List<BookingRequestDTO>> outcome : outcomes) {
+                List<BookingRequestDTO> booked = outcome.get(30, TimeUnit.SECONDS);
+                for (BookingRequestDTO booking : booked) {
+                    (booking.getDate().equals(date1) ? bookedOnDate1 : bookedOnDate2).addAll(booking.getSeatLabels());
+                }
+                if (booked.size() > 1) {
+                    numBatchesBooked++;
+                }
+            }
+            assertFalse(bookedOnDate1.isEmpty());
+            assertTrue(numBatchesBooked > 0);
+
+            assertEquals(sorted(bookedOnDate1), getBookedSeatLabels("2020-02-15T20:00:00"));
+            assertEquals(sorted(bookedOnDate2), getBookedSeatLabels("2019-09-19T20:00:00"));
+            assertEquals(bookedOnDate1.size(), getAvailability(client, 1).getNumSeatsBooked());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     // Tests for publish / subscribe functions - uncomment when ready.
     // --------------------------------------------------------------------
 
@@ -801,9 +1196,447 @@ public class ConcertResourceIT {
 
     }
 
+    /**
+     * Tests that the live subscriptions are counted in /metrics, and that a subscription stops being counted once its
+     * subscriber has been notified.
+     */
+    @Test
+    public void testSubscriptionMetrics() throws ExecutionException, InterruptedException, TimeoutException {
+
+        // Log in
+        login(client, "testuser", "pa55word");
+        int before = liveSubscriptions(client);
+
+        // Subscribe, and wait for the subscription to be counted
+        LocalDateTime date = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+        ConcertInfoSubscriptionDTO subInfo = new ConcertInfoSubscriptionDTO(1, date, 50);
+        Future<ConcertInfoNotificationDTO> future = client.target(WEB_SERVICE_URI + "/subscribe/concertInfo")
+                .request().async().post(Entity.json(subInfo), ConcertInfoNotificationDTO.class);
+        for (int i = 0; i < 20 && liveSubscriptions(client) == before; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(before + 1, liveSubscriptions(client));
+
+        // Book out most of the theatre, so that the subscriber is notified
+        Client user2Client = ClientBuilder.newClient();
+        try {
+            login(user2Client, "testuser2", "pa55word");
+            attemptBooking(user2Client, 1, date, 'A', 'G');
+            future.get(2, TimeUnit.SECONDS);
+        } finally {
+            user2Client.close();
+        }
+
+        // The notified subscription is no longer counted
+        assertTrue(liveSubscriptions(client) <= before);
+    }
+
+    /**
+     * Tests that the concert looked up to validate a booking is read from the second-level cache after the first time.
+     */
+    @Test
+    public void testBookingUsesSecondLevelCache() {
+
+        login(client, "testuser", "pa55word");
+        LocalDateTime date = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+        attemptBooking(client, 1, date, "C5");
+        long hits = getMetric(client, "hibernate.secondLevelCache.hits").longValue();
+
+        // The second booking finds the concert in the cache
+        Response response = attemptBooking(client, 1, date, "C6");
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+        assertTrue(getMetric(client, "hibernate.secondLevelCache.hits").longValue() > hits);
+    }
+
+    /**
+     * Tests that the concerts have an ETag, that fetching them again with it gives a 304, and that they are gzipped for
+     * clients that accept that.
+     */
+    @Test
+    public void testConcertsNotModified() throws IOException {
+
+        // Get the concerts and their ETag
+        Response response = client.target(WEB_SERVICE_URI + "/concerts").request().get();
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        EntityTag tag = response.getEntityTag();
+        assertNotNull(tag);
+        response.close();
+
+        // Nothing has changed
+        response = client.target(WEB_SERVICE_URI + "/concerts").request().header("If-None-Match", tag.toString()).get();
+        assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), response.getStatus());
+        response.close();
+
+        // The gzipped concerts are the same as the plain ones
+        response = client.target(WEB_SERVICE_URI + "/concerts").request().header("Accept-Encoding", "gzip").get();
+        assertEquals("gzip", response.getHeaderString("Content-Encoding"));
+        try (InputStream gzipped = new GZIPInputStream(response.readEntity(InputStream.class))) {
+            List<ConcertDTO> concerts = new ObjectMapper().readValue(gzipped, new TypeReference<List<ConcertDTO>>() {
+            });
+            assertEquals(8, concerts.size());
+        }
+    }
+
+    /**
+     * Tests paging through the concert summaries by following the Link header to the next page, and filtering the
+     * concerts and performers by date range and genre.
+     */
+    @Test
+    public void testPagedAndFilteredListings() {
+
+        // Page through the summaries, three at a time
+        List<Long> ids = new ArrayList<>();
+        String uri = WEB_SERVICE_URI + "/concerts/summaries?limit=3";
+        int numPages = 0;
+        while (uri != null) {
+            Response response = client.target(uri).request().get();
+            assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+            List<ConcertSummaryDTO> page = response.readEntity(new GenericType<List<ConcertSummaryDTO>>() {
+            });
+            assertTrue(page.size() <= 3);
+            page.forEach(summary -> ids.add(summary.getId()));
+            uri = response.getLink("next") == null ? null : response.getLink("next").getUri().toString();
+            numPages++;
+        }
+        assertEquals(3, numPages);
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L), ids);
+
+        // Only concerts 2 and 4 are in September 2019
+        List<ConcertDTO> concerts = client.target(WEB_SERVICE_URI + "/concerts")
+                .queryParam("from", "2019-09-01T00:00:00").queryParam("to", "2019-10-01T00:00:00")
+                .request().get(new GenericType<List<ConcertDTO>>() {
+                });
+        assertEquals(Arrays.asList(2L, 4L), concerts.stream().map(ConcertDTO::getId).collect(Collectors.toList()));
+
+        // Concert 7 has two pop performers, but is only listed once
+        List<ConcertSummaryDTO> summaries = client.target(WEB_SERVICE_URI + "/concerts/summaries")
+                .queryParam("genre", Genre.Pop).request().get(new GenericType<List<ConcertSummaryDTO>>() {
+                });
+        assertEquals(Arrays.asList(3L, 7L, 8L),
+                summaries.stream().map(ConcertSummaryDTO::getId).collect(Collectors.toList()));
+
+        // The pop performers after performer 8
+        List<PerformerDTO> performers = client.target(WEB_SERVICE_URI + "/performers")
+                .queryParam("genre", Genre.Pop).queryParam("after", 8).request()
+                .get(new GenericType<List<PerformerDTO>>() {
+                });
+        assertEquals(Arrays.asList(9L, 10L, 11L),
+                performers.stream().map(PerformerDTO::getId).collect(Collectors.toList()));
+
+        // A limit of 0 is a bad request
+        Response response = client.target(WEB_SERVICE_URI + "/concerts").queryParam("limit", 0).request().get();
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+        response.close();
+
+        // So is a genre that doesn't exist
+        response = client.target(WEB_SERVICE_URI + "/concerts").queryParam("genre", "Polka").request().get();
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+        response.close();
+        response = client.target(WEB_SERVICE_URI + "/performers").queryParam("genre", "Polka").request().get();
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+        response.close();
+    }
+
+    /**
+     * Tests searching the concerts by the start of words from their titles, performers and genres.
+     */
+    @Test
+    public void testSearchConcerts() {
+
+        // Both words must match, and "mend" is the start of "Mendes"
+        List<ConcertSummaryDTO> results = searchConcerts("mend ruel");
+        assertEquals(1, results.size());
+        assertEquals(8L, results.get(0).getId().longValue());
+
+        // A title match ranks above a performer's genre
+        results = searchConcerts("Bastille");
+        assertEquals(3L, results.get(0).getId().longValue());
+
+        // Concert 5 has a Rock performer, and concert 2 a SoftRock one, as the genre is also split into words
+        results = searchConcerts("rock");
+        assertEquals(Arrays.asList(2L, 5L), results.stream().map(ConcertSummaryDTO::getId).collect(Collectors.toList()));
+
+        assertTrue(searchConcerts("nosuchconcert").isEmpty());
+
+        // A search needs words
+        Response response = client.target(WEB_SERVICE_URI + "/concerts/search").request().get();
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+        response.close();
+    }
+
+    /**
+     * Tests getting the performances in a date range, in date order, with the seats left for each.
+     */
+    @Test
+    public void testGetPerformances() {
+        login(client, "testuser", "pa55word");
+        attemptBooking(client, 4, LocalDateTime.of(2019, 9, 7, 20, 0, 0), "C5", "C6");
+
+        // Concerts 4 and 2 are on in the second week of September 2019
+        List<PerformanceDTO> performances = client.target(WEB_SERVICE_URI + "/performances")
+                .queryParam("from", "2019-09-06T00:00:00").queryParam("to", "2019-09-13T00:00:00")
+                .request().get(new GenericType<List<PerformanceDTO>>() {
+                });
+        assertEquals(3, performances.size());
+
+        assertEquals(4L, performances.get(0).getConcertId());
+        assertEquals(LocalDateTime.of(2019, 9, 6, 20, 0, 0), performances.get(0).getDate());
+        assertEquals(120, performances.get(0).getNumSeatsFree());
+
+        assertEquals(4L, performances.get(1).getConcertId());
+        assertEquals(LocalDateTime.of(2019, 9, 7, 20, 0, 0), performances.get(1).getDate());
+        assertEquals(118, performances.get(1).getNumSeatsFree());
+        assertEquals(2, performances.get(1).getNumSeatsBooked());
+
+        assertEquals(2L, performances.get(2).getConcertId());
+        assertEquals("Fleetwood Mac", performances.get(2).getTitle());
+
+        // The first five of all 13 performances
+        performances = client.target(WEB_SERVICE_URI + "/performances").queryParam("limit", 5).request()
+                .get(new GenericType<List<PerformanceDTO>>() {
+                });
+        assertEquals(5, performances.size());
+        assertEquals(LocalDateTime.of(2019, 9, 6, 20, 0, 0), performances.get(0).getDate());
+    }
+
+    /**
+     * Tests counting the booked seats of each date of a concert, in total and in each price band, and of several
+     * concerts at once.
+     */
+    @Test
+    public void testGetConcertAvailability() {
+        login(client, "testuser", "pa55word");
+        attemptBooking(client, 4, LocalDateTime.of(2019, 9, 7, 20, 0, 0), "A1", "A2", "J12");
+
+        List<AvailabilityDTO> availability = client.target(WEB_SERVICE_URI + "/concerts/4/availability").request()
+                .get(new GenericType<List<AvailabilityDTO>>() {
+                });
+        assertEquals(2, availability.size());
+        assertEquals(LocalDateTime.of(2019, 9, 6, 20, 0, 0), availability.get(0).getDate());
+        assertEquals(0, availability.get(0).getNumSeatsBooked());
+
+        AvailabilityDTO booked = availability.get(1);
+        assertEquals(120, booked.getNumSeats());
+        assertEquals(3, booked.getNumSeatsBooked());
+        assertEquals(3, booked.getPriceBands().size());
+        assertEquals("Platinum Seating", booked.getPriceBands().get(0).getPriceBand());
+        assertEquals(60, booked.getPriceBands().get(0).getNumSeats());
+        assertEquals(2, booked.getPriceBands().get(0).getNumSeatsBooked());
+        assertEquals(0, booked.getPriceBands().get(1).getNumSeatsBooked());
+        assertEquals("Silver Seating", booked.getPriceBands().get(2).getPriceBand());
+        assertEquals(1, booked.getPriceBands().get(2).getNumSeatsBooked());
+
+        // Concerts 1 and 4 have three dates between them, and there is no concert 100
+        availability = client.target(WEB_SERVICE_URI + "/concerts/availability")
+                .queryParam("id", 1, 4, 100).request().get(new GenericType<List<AvailabilityDTO>>() {
+                });
+        assertEquals(3, availability.size());
+        assertEquals(1L, availability.get(0).getConcertId());
+
+        Response response = client.target(WEB_SERVICE_URI + "/concerts/100/availability").request().get();
+        assertEquals(Response.Status.NOT_FOUND.getStatusCode(), response.getStatus());
+        response.close();
+    }
+
+    /**
+     * Tests that the seats of a date have an ETag, that fetching them again with it gives a 304 until the seats change,
+     * and that the ETag changes when they do.
+     */
+    @Test
+    public void testSeatsNotModified() {
+
+        // Get the seats and their ETag
+        String uri = WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00?status=Booked";
+        Response response = client.target(uri).request().get();
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        EntityTag tag = response.getEntityTag();
+        assertNotNull(tag);
+        assertEquals("Accept", response.getHeaderString("Vary"));
+        response.close();
+
+        // Nothing has changed
+        response = client.target(uri).request().header("If-None-Match", tag.toString()).get();
+        assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), response.getStatus());
+        assertEquals("Accept", response.getHeaderString("Vary"));
+        response.close();
+
+        // Book some seats, after which the seats are sent again
+        login(client, "testuser", "pa55word");
+        attemptBooking(client, 1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), "C5", "C6");
+
+        response = client.target(uri).request().header("If-None-Match", tag.toString()).get();
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        assertNotEquals(tag, response.getEntityTag());
+        assertEquals(2, response.readEntity(new GenericType<List<SeatDTO>>() {
+        }).size());
+    }
+
+    /**
+     * Tests that the seats of a date get a new ETag when the seat maps are loaded again, as they are when the service
+     * starts, so a client's ETag from before can't match a different seat map.
+     */
+    @Test
+    public void testSeatsTagChangesWhenReloaded() {
+        String uri = WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00?status=Booked";
+        Response response = client.target(uri).request().get();
+        EntityTag tag = response.getEntityTag();
+        assertNotNull(tag);
+        response.close();
+
+        // Resetting the database loads the seat maps again, with the same seats
+        client.target(WEB_SERVICE_URI + "-test/reset").request().get().close();
+
+        response = client.target(uri).request().header("If-None-Match", tag.toString()).get();
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        assertNotEquals(tag, response.getEntityTag());
+        response.close();
+    }
+
+    /**
+     * Tests that the booked seats can be fetched in the compact binary form, by asking for application/x-seatmap.
+     */
+    @Test
+    public void testGetCompactSeatMap() {
+
+        // Book some seats
+        login(client, "testuser", "pa55word");
+        attemptBooking(client, 1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), "C5", "C6");
+
+        // Get the seat map
+        Response response = client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00")
+                .request(SeatMapCodec.MEDIA_TYPE).get();
+        assertEquals("Accept", response.getHeaderString("Vary"));
+        byte[] bytes = response.readEntity(byte[].class);
+        SeatOccupancy seats = SeatMapCodec.decode(bytes);
+
+        assertEquals(22, bytes.length);
+        assertEquals(10, seats.getNumRows());
+        assertEquals(12, seats.getSeatsPerRow());
+        assertEquals(Arrays.asList("C5", "C6"), seats.getBookedLabels());
+    }
+
+    /**
+     * Tests that a stream of the seats of a concert date starts with a snapshot, and then sends the seats booked.
+     */
+    @Test
+    public void testSeatStream() throws InterruptedException {
+
+        BlockingQueue<InboundSseEvent> events = new LinkedBlockingQueue<>();
+        try (SseEventSource source = SseEventSource.target(
+                client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00/stream")).build()) {
+            source.register(events::add);
+            source.open();
+
+            // Nothing has been booked yet
+            InboundSseEvent snapshot = events.poll(5, TimeUnit.SECONDS);
+            assertNotNull(snapshot);
+            assertEquals("snapshot", snapshot.getName());
+            assertTrue(snapshot.readData(SeatMapChangesDTO.class, MediaType.APPLICATION_JSON_TYPE).getBooked().isEmpty());
+
+            // Book some seats, which should be streamed
+            login(client, "testuser", "pa55word");
+            Response response = attemptBooking(client, 1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), "C5", "C6");
+            assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+
+            InboundSseEvent changes = events.poll(5, TimeUnit.SECONDS);
+            assertNotNull(changes);
+            assertEquals("changes", changes.getName());
+            SeatMapChangesDTO changed = changes.readData(SeatMapChangesDTO.class, MediaType.APPLICATION_JSON_TYPE);
+            assertEquals(Arrays.asList("C5", "C6"), changed.getBooked());
+            assertTrue(changed.getReleased().isEmpty());
+        }
+    }
+
     // Helper methods
     // --------------------------------------------------------------------
 
+    /**
+     * Helper method to get the number of subscriptions waiting for a notification.
+     */
+    private static int liveSubscriptions(Client client) {
+        return getMetric(client, "subscriptions.live").intValue();
+    }
+
+    /**
+     * Helper method to search the concerts.
+     */
+    private List<ConcertSummaryDTO> searchConcerts(String query) {
+        return client.target(WEB_SERVICE_URI + "/concerts/search").queryParam("q", query).request()
+                .get(new GenericType<List<ConcertSummaryDTO>>() {
+                });
+    }
+
+    /**
+     * Helper method to get the current value of a metric.
+     */
+    private static Number getMetric(Client client, String name) {
+        Map<String, Number> metrics = client.target(WEB_SERVICE_URI + "/metrics")
+                .request().get(new GenericType<Map<String, Number>>() {
+                });
+        return metrics.get(name);
+    }
+
+    /**
+     * Helper method to get the booked and held seat counts, in total and per price band, of the concert's first date.
+     */
+    private static AvailabilityDTO getAvailability(Client client, long concertId) {
+        return client.target(WEB_SERVICE_URI + "/concerts/" + concertId + "/availability").request()
+                .get(new GenericType<List<AvailabilityDTO>>() {
+                }).get(0);
+    }
+
+    /**
+     * Helper method to get the sorted labels of the booked seats on the given date.
+     */
+    private List<String> getBookedSeatLabels(String date) {
+        List<SeatDTO> bookedSeats = client.target(WEB_SERVICE_URI + "/seats/" + date + "?status=Booked")
+                .request().get(new GenericType<List<SeatDTO>>() {
+                });
+        return sorted(bookedSeats.stream().map(SeatDTO::getLabel).collect(Collectors.toList()));
+    }
+
+    private static List<String> sorted(List<String> labels) {
+        List<String> sorted = new ArrayList<>(labels);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Helper method to make a booking, or an AllOrNothing batch of them if there is more than one, with a new client.
+     * The task checks that the request either succeeds or fails because of a booked seat, and returns the bookings
+     * that were made.
+     */
+    private static Callable<List<BookingRequestDTO>> bookConcurrently(Cookie cookie, List<BookingRequestDTO> bookings) {
+        return () -> {
+            Client bookingClient = ClientBuilder.newClient();
+            try {
+                if (bookings.size() == 1) {
+                    Response response = bookingClient.target(WEB_SERVICE_URI + "/bookings").request().cookie(cookie)
+                            .post(Entity.json(bookings.get(0)));
+                    if (response.getStatus() == Response.Status.FORBIDDEN.getStatusCode()) {
+                        return Collections.emptyList();
+                    }
+                    assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+                    return bookings;
+                }
+
+                Response response = bookingClient.target(WEB_SERVICE_URI + "/bookings/batch").request()
+                        .cookie(cookie).post(Entity.json(new BatchBookingRequestDTO(bookings, BatchMode.AllOrNothing)));
+                if (response.getStatus() == Response.Status.CONFLICT.getStatusCode()) {
+                    return Collections.emptyList();
+                }
+                assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+                for (BookingResultDTO result : response.readEntity(new GenericType<List<BookingResultDTO>>() {
+                })) {
+                    assertEquals(Response.Status.CREATED.getStatusCode(), result.getStatus());
+                }
+                return bookings;
+            } finally {
+                bookingClient.close();
+            }
+        };
+    }
+
     /**
      * Helper method to log us in.
      */
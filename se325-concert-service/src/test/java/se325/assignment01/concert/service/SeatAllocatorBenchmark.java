@@ -0,0 +1,76 @@
+package se325.assignment01.concert.service;
+
+import org.junit.Test;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import se325.assignment01.concert.service.util.SeatAllocator;
+import se325.assignment01.concert.service.util.SeatMap;
+import se325.assignment01.concert.service.util.TheatreLayout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long {@link SeatAllocator} takes to find the best block of seats, over seat maps with seats booked at
+ * random. This is not run as part of the build, run it with:
+ * <code>
+ *     mvn test -Dtest=SeatAllocatorBenchmark -Dsurefire.failIfNoSpecifiedTests=false
+ * </code>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeatAllocatorBenchmark {
+
+    private static final int NUM_SEAT_MAPS = 1024;
+
+    @Param({"0.25", "0.5", "0.75", "0.9"})
+    public double occupancy;
+
+    @Param({"2", "4", "8"})
+    public int numSeats;
+
+    private SeatMap[] seatMaps;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        seatMaps = new SeatMap[NUM_SEAT_MAPS];
+        for (int i = 0; i < NUM_SEAT_MAPS; i++) {
+            List<String> booked = new ArrayList<>();
+            for (int row = 0; row < TheatreLayout.NUM_ROWS; row++) {
+                for (int seat = 1; seat <= TheatreLayout.NUM_SEATS_PER_ROW; seat++) {
+                    if (random.nextDouble() < occupancy) {
+                        booked.add(TheatreLayout.labelOf(row, seat));
+                    }
+                }
+            }
+            seatMaps[i] = SeatMap.empty().withBooked(SeatMap.maskOf(booked));
+        }
+    }
+
+    @Benchmark
+    public long[] findBest() {
+        SeatMap seatMap = seatMaps[next++ & (NUM_SEAT_MAPS - 1)];
+        return SeatAllocator.findBest(seatMap, numSeats, null);
+    }
+
+    @Benchmark
+    public long[] findBestInBand() {
+        SeatMap seatMap = seatMaps[next++ & (NUM_SEAT_MAPS - 1)];
+        return SeatAllocator.findBest(seatMap, numSeats, TheatreLayout.PRICE_BANDS[1]);
+    }
+
+    @Test
+    public void benchmark() throws RunnerException {
+        new Runner(new OptionsBuilder().include(SeatAllocatorBenchmark.class.getName()).build()).run();
+    }
+}
@@ -0,0 +1,172 @@
+package se325.assignment01.concert.service;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se325.assignment01.concert.service.domain.Seat;
+import se325.assignment01.concert.service.services.PersistenceManager;
+import se325.assignment01.concert.service.util.ConcertUtils;
+import se325.assignment01.concert.service.util.RetryPolicy;
+import se325.assignment01.concert.service.util.SeatLockingStrategy;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the {@link SeatLockingStrategy}s when many threads race for overlapping seats on the same date. Each round,
+ * every thread tries to book a few adjacent seats from the same two rows at the same time, so most of them lose. This
+ * is not run as part of the build (it uses the database directly, so the web service must not be running), run it with:
+ * <code>
+ *     mvn test -Dtest=SeatLockingBenchmark -Dsurefire.failIfNoSpecifiedTests=false
+ * </code>
+ */
+public class SeatLockingBenchmark {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(SeatLockingBenchmark.class);
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+    private static final int NUM_THREADS = 8;
+    private static final int NUM_ROUNDS = 50;
+    private static final int SEATS_PER_BOOKING = 3;
+    private static final char[] HOT_ROWS = {'A', 'B'};
+
+    @BeforeClass
+    public static void setUp() {
+        ConcertUtils.initConcerts();
+    }
+
+    @Test
+    public void benchmarkOptimistic() throws Exception {
+        race("optimistic", SeatLockingStrategy.forName("optimistic"));
+    }
+
+    @Test
+    public void benchmarkConditional() throws Exception {
+        race("conditional", SeatLockingStrategy.forName("conditional"));
+    }
+
+    @Test
+    public void benchmarkPessimistic() throws Exception {
+        race("pessimistic", SeatLockingStrategy.forName("pessimistic"));
+    }
+
+    @Test
+    public void benchmarkSkipLocked() throws Exception {
+        race("skipLocked", SeatLockingStrategy.forName("skipLocked"));
+    }
+
+    /**
+     * Runs all the rounds for a strategy and logs the results. Checks that no seat was booked twice.
+     */
+    private void race(String name, SeatLockingStrategy strategy) throws Exception {
+        RetryPolicy retryPolicy = new RetryPolicy(3, 5);
+        AtomicInteger numWon = new AtomicInteger();
+        AtomicInteger numLost = new AtomicInteger();
+        AtomicInteger numAttempts = new AtomicInteger();
+        AtomicInteger numGaveUp = new AtomicInteger();
+        long totalNanos = 0;
+
+        ExecutorService threads = Executors.newFixedThreadPool(NUM_THREADS);
+        try {
+            for (int round = 0; round < NUM_ROUNDS; round++) {
+                resetSeats();
+                CyclicBarrier start = new CyclicBarrier(NUM_THREADS + 1);
+                List<Future<?>> futures = new ArrayList<>();
+                Random random = new Random(round); //Same seat choices for every method
+                int wonBefore = numWon.get();
+
+                for (int t = 0; t < NUM_THREADS; t++) {
+                    List<String> labels = pickSeats(random);
+                    futures.add(threads.submit(() -> {
+                        start.await();
+                        try {
+                            List<Seat> seats = retryPolicy.execute(() -> {
+                                numAttempts.incrementAndGet();
+                                return inTransaction(em -> strategy.claim(em, DATE, labels));
+                            });
+                            (seats == null ? numLost : numWon).incrementAndGet();
+                        } catch (RuntimeException e) {
+                            numGaveUp.incrementAndGet();
+                        }
+                        return null;
+                    }));
+                }
+
+                long begin = System.nanoTime();
+                start.await();
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                totalNanos += System.nanoTime() - begin;
+
+                //If two overlapping bookings had both won, fewer seats would be booked than were claimed
+                assertEquals((numWon.get() - wonBefore) * SEATS_PER_BOOKING, countBookedSeats());
+            }
+        } finally {
+            threads.shutdown();
+        }
+
+        LOGGER.info(String.format("%-14s %d rounds x %d threads: %.1f ms/round, %d won, %d lost, %d gave up, " +
+                        "%.2f attempts/booking", name, NUM_ROUNDS, NUM_THREADS, totalNanos / 1e6 / NUM_ROUNDS,
+                numWon.get(), numLost.get(), numGaveUp.get(), numAttempts.get() / (double) (NUM_ROUNDS * NUM_THREADS)));
+    }
+
+    /**
+     * Picks adjacent seats in one of the hot rows.
+     */
+    private static List<String> pickSeats(Random random) {
+        char row = HOT_ROWS[random.nextInt(HOT_ROWS.length)];
+        int first = 1 + random.nextInt(12 - SEATS_PER_BOOKING + 1);
+        List<String> labels = new ArrayList<>();
+        for (int i = 0; i < SEATS_PER_BOOKING; i++) {
+            labels.add("" + row + (first + i));
+        }
+        return labels;
+    }
+
+    private interface Work<T> {
+        T apply(EntityManager em);
+    }
+
+    /**
+     * Runs the work in its own transaction, committing it if the work returns a result and rolling it back otherwise.
+     */
+    private static <T> T inTransaction(Work<T> work) {
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            em.getTransaction().begin();
+            T result = work.apply(em);
+            if (result != null) {
+                em.getTransaction().commit();
+            }
+            return result;
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
+    private static void resetSeats() {
+        inTransaction(em -> em.createQuery("update Seat s set s.isBooked = false where s.date = :date")
+                .setParameter("date", DATE).executeUpdate());
+    }
+
+    private static int countBookedSeats() {
+        return inTransaction(em -> em.createQuery(
+                "select count(s) from Seat s where s.date = :date and s.isBooked = true", Long.class)
+                .setParameter("date", DATE).getSingleResult()).intValue();
+    }
+}
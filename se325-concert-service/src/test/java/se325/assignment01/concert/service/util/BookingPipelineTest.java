@@ -0,0 +1,173 @@
+package se325.assignment01.concert.service.util;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that commands queued on the {@link BookingPipeline} run one at a time per lane, even when they are queued on
+ * several lanes at once, and are always either run or abandoned.
+ */
+public class BookingPipelineTest {
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+
+    //Performances that are routed to lanes 0, 1, 2 and 3 of a pipeline with four lanes
+    private static final Performance[] PERFORMANCES = {
+            new Performance(1, DATE),
+            new Performance(4, LocalDateTime.of(2019, 9, 7, 20, 0, 0)),
+            new Performance(2, LocalDateTime.of(2019, 9, 12, 20, 0, 0)),
+            new Performance(2, LocalDateTime.of(2019, 9, 19, 20, 0, 0))};
+
+    private BookingPipeline pipeline;
+
+    @After
+    public void tearDown() {
+        if (pipeline != null) {
+            pipeline.stop();
+        }
+    }
+
+    @Test
+    public void testCommandsForSamePerformanceRunOneAtATime() throws InterruptedException {
+        pipeline = new BookingPipeline(4, 1024);
+        int numThreads = 4;
+        int commandsPerThread = 100;
+        CountDownLatch finished = new CountDownLatch(numThreads * commandsPerThread);
+        AtomicInteger running = new AtomicInteger();
+        AtomicBoolean overlapped = new AtomicBoolean(false);
+        AtomicBoolean outOfOrder = new AtomicBoolean(false);
+        AtomicBoolean rejected = new AtomicBoolean(false);
+
+        List<Thread> submitters = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            AtomicInteger lastRun = new AtomicInteger(-1);
+            submitters.add(new Thread(() -> {
+                for (int i = 0; i < commandsPerThread; i++) {
+                    int sequence = i;
+                    boolean queued = pipeline.submit(List.of(PERFORMANCES[0]), () -> {
+                        if (running.incrementAndGet() > 1) {
+                            overlapped.set(true);
+                        }
+                        //Each submitter's commands run in the order it queued them
+                        if (lastRun.getAndSet(sequence) != sequence - 1) {
+                            outOfOrder.set(true);
+                        }
+                        Thread.yield();
+                        running.decrementAndGet();
+                        finished.countDown();
+                    }, () -> {
+                    });
+                    if (!queued) {
+                        rejected.set(true);
+                    }
+                }
+            }));
+        }
+        submitters.forEach(Thread::start);
+        for (Thread submitter : submitters) {
+            submitter.join();
+        }
+
+        assertFalse(rejected.get());
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertFalse(overlapped.get());
+        assertFalse(outOfOrder.get());
+    }
+
+    @Test
+    public void testCrossingMultiLaneCommandsDoNotDeadlock() throws InterruptedException {
+        pipeline = new BookingPipeline(4, 1024);
+        int numThreads = 4;
+        int commandsPerThread = 200;
+        CountDownLatch finished = new CountDownLatch(numThreads * commandsPerThread);
+        AtomicInteger[] running = new AtomicInteger[PERFORMANCES.length];
+        for (int i = 0; i < running.length; i++) {
+            running[i] = new AtomicInteger();
+        }
+        AtomicBoolean overlapped = new AtomicBoolean(false);
+        AtomicBoolean rejected = new AtomicBoolean(false);
+
+        List<Thread> submitters = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            int thread = t;
+            submitters.add(new Thread(() -> {
+                for (int i = 0; i < commandsPerThread; i++) {
+                    //Each thread asks for the lanes in a different order, and for one, two or three of them
+                    List<Integer> laneIndexes = new ArrayList<>();
+                    for (int n = 0; n <= i % 3; n++) {
+                        laneIndexes.add((thread + i + n * (thread % 2 == 0 ? 1 : -1) + PERFORMANCES.length)
+                                % PERFORMANCES.length);
+                    }
+                    List<Performance> performances = new ArrayList<>();
+                    for (int laneIndex : laneIndexes) {
+                        performances.add(PERFORMANCES[laneIndex]);
+                    }
+
+                    boolean queued = pipeline.submit(performances, () -> {
+                        for (int laneIndex : laneIndexes) {
+                            if (running[laneIndex].incrementAndGet() > 1) {
+                                overlapped.set(true);
+                            }
+                        }
+                        Thread.yield();
+                        for (int laneIndex : laneIndexes) {
+                            running[laneIndex].decrementAndGet();
+                        }
+                        finished.countDown();
+                    }, () -> {
+                    });
+                    if (!queued) {
+                        rejected.set(true);
+                    }
+                }
+            }));
+        }
+        submitters.forEach(Thread::start);
+        for (Thread submitter : submitters) {
+            submitter.join();
+        }
+
+        //Every command runs, and never alongside another command for any of the same lanes
+        assertFalse(rejected.get());
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertFalse(overlapped.get());
+    }
+
+    @Test
+    public void testStopAbandonsQueuedCommands() throws InterruptedException {
+        pipeline = new BookingPipeline(1, 16);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch abandoned = new CountDownLatch(2);
+        AtomicBoolean ran = new AtomicBoolean(false);
+
+        // Hold up the lane, so the commands after it are still queued when the pipeline stops
+        assertTrue(pipeline.submit(List.of(new Performance(1, DATE)), () -> {
+            running.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, abandoned::countDown));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        assertTrue(pipeline.submit(List.of(new Performance(1, DATE)), () -> ran.set(true), abandoned::countDown));
+        assertTrue(pipeline.submit(List.of(new Performance(1, DATE), new Performance(2, DATE)),
+                () -> ran.set(true), abandoned::countDown));
+        pipeline.stop();
+
+        // Only the queued commands are abandoned, and none of them run
+        assertTrue(abandoned.await(5, TimeUnit.SECONDS));
+        assertFalse(ran.get());
+    }
+}
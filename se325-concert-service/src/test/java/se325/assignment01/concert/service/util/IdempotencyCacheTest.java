@@ -0,0 +1,53 @@
+package se325.assignment01.concert.service.util;
+
+import org.junit.Test;
+
+import javax.ws.rs.core.Response;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that retries waiting on the {@link IdempotencyCache} are always answered, even if the first request's entry is
+ * dropped before that request is done.
+ */
+public class IdempotencyCacheTest {
+
+    @Test
+    public void testRetryGetsFirstResult() {
+        IdempotencyCache cache = new IdempotencyCache(10, 60);
+
+        assertNull(cache.begin("1 key", "bookings"));
+        CompletableFuture<IdempotencyCache.Result> retry = cache.begin("1 key", "bookings");
+        assertFalse(retry.isDone());
+
+        cache.complete("1 key", Response.status(Response.Status.CREATED).build());
+        assertEquals(Response.Status.CREATED.getStatusCode(), retry.join().toResponse().getStatus());
+    }
+
+    @Test
+    public void testClearAnswersWaitingRetries() {
+        IdempotencyCache cache = new IdempotencyCache(10, 60);
+
+        assertNull(cache.begin("1 key", "bookings"));
+        CompletableFuture<IdempotencyCache.Result> retry = cache.begin("1 key", "bookings");
+        cache.clear();
+
+        assertTrue(retry.isDone());
+        assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), retry.join().toResponse().getStatus());
+        assertNull(cache.begin("1 key", "bookings"));
+    }
+
+    @Test
+    public void testEvictionAnswersWaitingRetries() {
+        IdempotencyCache cache = new IdempotencyCache(2, 60);
+
+        assertNull(cache.begin("1 first", "bookings"));
+        CompletableFuture<IdempotencyCache.Result> retry = cache.begin("1 first", "bookings");
+        assertNull(cache.begin("1 second", "bookings"));
+        assertNull(cache.begin("1 third", "bookings")); //Evicts the first key, as only two are kept
+
+        assertTrue(retry.isDone());
+        assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), retry.join().toResponse().getStatus());
+    }
+}
@@ -0,0 +1,154 @@
+package se325.assignment01.concert.service.util;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the signed session tokens issued when -Dconcert.sessionTokens=signed, which the integration tests don't use.
+ */
+public class SessionTokensTest {
+
+    private static final long TTL_SECONDS = 60;
+
+    @Test
+    public void testVerifyIssuedToken() {
+        SessionTokens tokens = withKeys(TTL_SECONDS, "a:" + secret("first"));
+
+        String token = tokens.issue(42, "testuser");
+        SessionTokens.Claims claims = tokens.verify(token);
+
+        assertNotNull(claims);
+        assertEquals(42, claims.getUserId());
+        assertEquals("testuser", claims.getUsername());
+        assertTrue(token.startsWith("a.42."));
+    }
+
+    @Test
+    public void testRejectTamperedPayload() {
+        SessionTokens tokens = withKeys(TTL_SECONDS, "a:" + secret("first"));
+
+        String token = tokens.issue(42, "testuser");
+        String forged = token.replaceFirst("^a\\.42\\.", "a.43.");
+
+        assertNotEquals(token, forged);
+        assertNull(tokens.verify(forged));
+    }
+
+    @Test
+    public void testRejectTamperedSignature() {
+        SessionTokens tokens = withKeys(TTL_SECONDS, "a:" + secret("first"));
+
+        String token = tokens.issue(42, "testuser");
+        int signatureStart = token.lastIndexOf('.') + 1;
+        char first = token.charAt(signatureStart);
+        String forged = token.substring(0, signatureStart) + (first == 'A' ? 'B' : 'A')
+                + token.substring(signatureStart + 1);
+
+        assertNull(tokens.verify(forged));
+    }
+
+    @Test
+    public void testRejectTokenSignedWithAnotherKey() {
+        SessionTokens tokens = withKeys(TTL_SECONDS, "a:" + secret("first"));
+        SessionTokens otherTokens = withKeys(TTL_SECONDS, "a:" + secret("other"));
+
+        assertNull(tokens.verify(otherTokens.issue(42, "testuser")));
+    }
+
+    @Test
+    public void testRejectMalformedToken() {
+        SessionTokens tokens = withKeys(TTL_SECONDS, "a:" + secret("first"));
+
+        assertNull(tokens.verify(""));
+        assertNull(tokens.verify("a.42"));
+        assertNull(tokens.verify("a.notanumber.1.dGVzdHVzZXI.c2ln"));
+    }
+
+    @Test
+    public void testRejectExpiredToken() {
+        SessionTokens tokens = withKeys(-1, "a:" + secret("first"));
+
+        assertNull(tokens.verify(tokens.issue(42, "testuser")));
+    }
+
+    @Test
+    public void testRandomKeyWhenNoneConfigured() {
+        SessionTokens tokens = withKeys(TTL_SECONDS, "");
+        SessionTokens otherTokens = withKeys(TTL_SECONDS, "");
+
+        String token = tokens.issue(42, "testuser");
+
+        assertNotNull(tokens.verify(token));
+        assertNull(otherTokens.verify(token));
+    }
+
+    @Test
+    public void testRotateKeysThroughConfig() {
+        //The service was first started with one key...
+        SessionTokens before = withKeys(TTL_SECONDS, "a:" + secret("first"));
+        String oldToken = before.issue(42, "testuser");
+
+        //...then restarted with a new key put in front of it
+        SessionTokens after = withKeys(TTL_SECONDS, "b:" + secret("second") + ", a:" + secret("first"));
+        String newToken = after.issue(42, "testuser");
+
+        assertTrue(newToken.startsWith("b."));
+        assertNotNull(after.verify(oldToken));
+        assertNotNull(after.verify(newToken));
+        assertNull(before.verify(newToken));
+
+        //...and once the old key is dropped from the list, its tokens are no longer accepted
+        SessionTokens later = withKeys(TTL_SECONDS, "b:" + secret("second"));
+
+        assertNull(later.verify(oldToken));
+        assertNotNull(later.verify(newToken));
+    }
+
+    @Test
+    public void testRotateKeepsOnlyLatestKeys() {
+        SessionTokens tokens = withKeys(TTL_SECONDS, "a:" + secret("first"));
+        String oldestToken = tokens.issue(42, "testuser");
+
+        tokens.rotate("b", secretBytes("second"));
+        String olderToken = tokens.issue(42, "testuser");
+        tokens.rotate("c", secretBytes("third"));
+
+        assertNotNull(tokens.verify(oldestToken));
+
+        tokens.rotate("d", secretBytes("fourth"));
+
+        assertNull(tokens.verify(oldestToken));
+        assertNotNull(tokens.verify(olderToken));
+        assertTrue(tokens.issue(42, "testuser").startsWith("d."));
+    }
+
+    /**
+     * Helper method to create the tokens with the given list of keys, as in -Dconcert.tokenKeys.
+     */
+    private static SessionTokens withKeys(long ttlSeconds, String keyList) {
+        SessionTokens tokens = new SessionTokens(ttlSeconds);
+        tokens.loadKeys(keyList);
+        return tokens;
+    }
+
+    /**
+     * Helper method to make a 32 byte secret from a seed, base64 encoded as in -Dconcert.tokenKeys.
+     */
+    private static String secret(String seed) {
+        return Base64.getEncoder().encodeToString(secretBytes(seed));
+    }
+
+    /**
+     * Helper method to make a 32 byte secret from a seed.
+     */
+    private static byte[] secretBytes(String seed) {
+        byte[] secret = new byte[32];
+        byte[] seedBytes = seed.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(seedBytes, 0, secret, 0, seedBytes.length);
+        return secret;
+    }
+}